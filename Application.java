@@ -1,15 +1,18 @@
-import config.DatabaseConfiguration;
+import dao.DaoFactory;
 import service.ContentSummarizerService;
 import service.ContentSummarizerServiceImpl;
 import api.ApiServer;
 import worker.JobWorker;
+import worker.OutboxRelay;
+import worker.RetentionPurger;
+import worker.SummaryCacheWriter;
 
 public class Application {
     private static final int DEFAULT_PORT = 8080;
     
     public static void main(String[] args) {
         System.out.println("Initializing database...");
-        DatabaseConfiguration.initialize();
+        DaoFactory.initialize();
         
         int apiPort = parsePort(args);
         
@@ -20,6 +23,12 @@ public class Application {
             
             JobWorker jobWorker = new JobWorker();
             jobWorker.start();
+            OutboxRelay.getInstance();
+            
+            RetentionPurger retentionPurger = RetentionPurger.isEnabled() ? new RetentionPurger() : null;
+            if (retentionPurger != null) {
+                retentionPurger.start();
+            }
             
             System.out.println("\nApplication started successfully!");
             System.out.println("API Server running on http://localhost:" + apiPort);
@@ -29,6 +38,12 @@ public class Application {
                 System.out.println("\nShutting down...");
                 apiServer.stop();
                 jobWorker.stop();
+                OutboxRelay.getInstance().stop();
+                if (retentionPurger != null) {
+                    retentionPurger.stop();
+                }
+                SummaryCacheWriter.getInstance().stop();
+                DaoFactory.shutdown();
             }));
             
             Thread.currentThread().join();
@@ -1,6 +1,8 @@
 package api;
 
 import service.ContentSummarizerService;
+import strategy.ExtractiveSummaryStrategy;
+import strategy.StrategyRegistry;
 import util.JsonUtils;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpHandler;
@@ -9,6 +11,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 
 public class ApiServer {
@@ -39,7 +42,7 @@ public class ApiServer {
         System.out.println("Create user endpoint: POST http://localhost:" + port + "/users");
         System.out.println("Submit endpoint: POST http://localhost:" + port + "/submit");
         System.out.println("Status endpoint: GET http://localhost:" + port + "/status/{jobId}");
-        System.out.println("Result endpoint: GET http://localhost:" + port + "/result/{jobId}");
+        System.out.println("Result endpoint: GET http://localhost:" + port + "/result/{jobId}[?partial=true]");
     }
     
     public void stop() {
@@ -60,6 +63,24 @@ public class ApiServer {
         return null;
     }
     
+    /**
+     * Value of the named query string parameter (URL-decoded), or null if the parameter is absent
+     */
+    private String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq >= 0 ? pair.substring(0, eq) : pair, StandardCharsets.UTF_8);
+            if (key.equals(name)) {
+                return eq >= 0 ? URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8) : "";
+            }
+        }
+        return null;
+    }
+    
     private String readRequestBody(HttpExchange exchange) throws IOException {
         InputStream is = exchange.getRequestBody();
         byte[] buffer = new byte[BUFFER_SIZE];
@@ -82,8 +103,10 @@ public class ApiServer {
     }
     
     private int determineStatusCode(Exception e) {
+        if (e.getMessage() == null) return 500;
         String message = e.getMessage().toLowerCase();
         if (message.contains("not found")) return 404;
+        if (message.contains("journal is full")) return 503;
         if (message.contains("not completed")) return 400;
         if (message.contains("already exists")) return 409;
         if (message.contains("foreign key") || message.contains("constraint")) return 400;
@@ -149,6 +172,8 @@ public class ApiServer {
                 String userId = JsonUtils.extractValue(requestBody, "user_id");
                 String content = JsonUtils.extractValue(requestBody, "content");
                 String isUrlStr = JsonUtils.extractValue(requestBody, "is_url");
+                String mode = JsonUtils.extractValue(requestBody, "mode");
+                String strategy = JsonUtils.extractValue(requestBody, "strategy");
                 
                 if (userId == null || userId.isEmpty()) {
                     sendResponse(exchange, "{\"error\": \"user_id is required\"}", 400);
@@ -164,13 +189,33 @@ public class ApiServer {
                 if (isUrlStr != null && !isUrlStr.isEmpty()) {
                     isUrl = "true".equalsIgnoreCase(isUrlStr.trim()) || "1".equals(isUrlStr.trim());
                 }
-                String jobId = service.submit(userId, content, isUrl);
+                
+                // mode=fast trades quality for latency: a local extractive summary instead of a model call
+                if (mode != null && !mode.trim().isEmpty() && !"default".equalsIgnoreCase(mode.trim())) {
+                    if (!"fast".equalsIgnoreCase(mode.trim())) {
+                        sendResponse(exchange, "{\"error\": \"mode must be fast or default\"}", 400);
+                        return;
+                    }
+                    if (strategy == null || strategy.trim().isEmpty()) {
+                        strategy = ExtractiveSummaryStrategy.NAME;
+                    } else if (!ExtractiveSummaryStrategy.NAME.equalsIgnoreCase(strategy.trim())) {
+                        sendResponse(exchange, "{\"error\": \"mode fast only works with the " + ExtractiveSummaryStrategy.NAME +
+                            " strategy; drop mode or strategy\"}", 400);
+                        return;
+                    }
+                }
+                if (!StrategyRegistry.getInstance().contains(strategy)) {
+                    sendResponse(exchange, "{\"error\": \"Unknown strategy. Available: " +
+                        String.join(", ", StrategyRegistry.getInstance().names()) + "\"}", 400);
+                    return;
+                }
+                String jobId = service.submit(userId, content, isUrl, strategy);
                 String response = "{\n  \"job_id\": \"" + jobId + "\"\n}";
                 sendResponse(exchange, response, 200);
-                
+            
             } catch (Exception e) {
                 String errorResponse = "{\"error\": \"" + JsonUtils.escape(e.getMessage()) + "\"}";
-                sendResponse(exchange, errorResponse, 500);
+                sendResponse(exchange, errorResponse, determineStatusCode(e));
             }
         }
     }
@@ -218,7 +263,8 @@ public class ApiServer {
             }
             
             try {
-                String response = service.getResult(jobId);
+                boolean partial = "true".equalsIgnoreCase(queryParameter(exchange, "partial"));
+                String response = service.getResult(jobId, partial);
                 sendResponse(exchange, response, 200);
             } catch (Exception e) {
                 String errorResponse = "{\"error\": \"" + JsonUtils.escape(e.getMessage()) + "\"}";
@@ -0,0 +1,297 @@
+package config;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * Fixed-bound JDBC connection pool.
+ * Borrowed connections are proxies whose close() hands the physical connection back to the pool,
+ * so existing try-with-resources blocks keep working unchanged.
+ */
+public class ConnectionPool implements DataSource {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final long connectionTimeoutMs;
+    private final long validationIdleMs;
+    private final long idleTimeoutMs;
+    private final long leakDetectionMs;
+    // Capture a stack trace on every borrow; costly, so only for tracking down a reported leak
+    private final boolean traceBorrowSites;
+
+    // Most recently returned connections are at the head, so cold ones age out from the tail
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+    
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long connectionTimeoutMs, long validationIdleMs, long idleTimeoutMs, long leakDetectionMs,
+                          boolean traceBorrowSites) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = Math.max(0, Math.min(minSize, maxSize));
+        this.connectionTimeoutMs = connectionTimeoutMs;
+        this.validationIdleMs = validationIdleMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.leakDetectionMs = leakDetectionMs;
+        this.traceBorrowSites = traceBorrowSites;
+        this.permits = new Semaphore(Math.max(1, maxSize), true);
+        
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep, 30, 30, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Opens connections up to the configured minimum size
+     */
+    public void warmUp() {
+        while (idle.size() < minSize) {
+            try {
+                idle.offerLast(new PooledConnection(DriverManager.getConnection(url, user, password)));
+            } catch (SQLException e) {
+                System.err.println("Error opening pooled connection: " + e.getMessage());
+                return;
+            }
+        }
+    }
+    
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        
+        try {
+            if (!permits.tryAcquire(connectionTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + connectionTimeoutMs + "ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null && !isUsable(pooled)) {
+                closeQuietly(pooled);
+            }
+            if (pooled == null) {
+                pooled = new PooledConnection(DriverManager.getConnection(url, user, password));
+            }
+            
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrower = Thread.currentThread();
+            pooled.borrowSite = leakDetectionMs > 0 && traceBorrowSites ? new Exception("Connection borrowed here") : null;
+            borrowed.add(pooled);
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+    
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pool connections use the configured credentials");
+    }
+    
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            closeQuietly(pooled);
+        }
+    }
+    
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        try {
+            Connection physical = pooled.physical;
+            if (closed || physical.isClosed()) {
+                closeQuietly(pooled);
+                return;
+            }
+            // Undo anything the borrower changed before the next one gets it
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (physical.isReadOnly()) {
+                physical.setReadOnly(false);
+            }
+            physical.clearWarnings();
+            pooled.lastUsedAt = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            closeQuietly(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+    
+    /**
+     * Connections idle longer than the validation threshold are checked before being handed out
+     */
+    private boolean isUsable(PooledConnection pooled) {
+        try {
+            if (pooled.physical.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - pooled.lastUsedAt < validationIdleMs) {
+                return true;
+            }
+            return pooled.physical.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+    
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        
+        // Retire connections idle for too long, keeping the minimum size
+        Iterator<PooledConnection> iterator = idle.descendingIterator();
+        while (iterator.hasNext() && idle.size() > minSize) {
+            PooledConnection pooled = iterator.next();
+            if (now - pooled.lastUsedAt > idleTimeoutMs && idle.removeLastOccurrence(pooled)) {
+                closeQuietly(pooled);
+            }
+        }
+        
+        if (leakDetectionMs > 0) {
+            for (PooledConnection pooled : borrowed) {
+                if (now - pooled.borrowedAt > leakDetectionMs && !pooled.leakReported) {
+                    pooled.leakReported = true;
+                    System.err.println("Possible connection leak: connection held for " + (now - pooled.borrowedAt) +
+                        "ms by thread " + pooled.borrower.getName());
+                    if (pooled.borrowSite != null) {
+                        pooled.borrowSite.printStackTrace();
+                    } else {
+                        // Where the borrower is now, captured only for this connection; usually still inside the code holding it
+                        for (StackTraceElement element : pooled.borrower.getStackTrace()) {
+                            System.err.println("\tat " + element);
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    private void closeQuietly(PooledConnection pooled) {
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            // Ignore
+        }
+    }
+    
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+    
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+    
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+    
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+    
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+    
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+    
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+    
+    private class PooledConnection {
+        final Connection physical;
+        volatile long lastUsedAt = System.currentTimeMillis();
+        volatile long borrowedAt;
+        volatile Thread borrower;
+        volatile Exception borrowSite;
+        volatile boolean leakReported;
+        
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+        
+        /**
+         * A fresh proxy per borrow, so a stale reference closed twice cannot return the connection again
+         */
+        Connection newHandle() {
+            leakReported = false;
+            InvocationHandler handler = new InvocationHandler() {
+                private boolean handleClosed;
+                
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!handleClosed) {
+                                handleClosed = true;
+                                release(PooledConnection.this);
+                            }
+                            return null;
+                        case "isClosed":
+                            return handleClosed || physical.isClosed();
+                        default:
+                            if (handleClosed) {
+                                throw new SQLException("Connection is closed");
+                            }
+                            try {
+                                return method.invoke(physical, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                }
+            };
+            return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, handler);
+        }
+    }
+}
@@ -10,18 +10,21 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashMap;
 import java.util.Map;
+import javax.sql.DataSource;
 
 public class DatabaseConfiguration {
     private static Map<String, String> envMap = new HashMap<>();
     private static boolean envLoaded = false;
     
-    private static Connection connection = null;
+    private static volatile ConnectionPool pool = null;
+    private static volatile ConnectionPool replicaPool = null;
     
     private static String DB_HOST;
     private static String DB_PORT;
     private static String DB_NAME;
     private static String DB_USER;
     private static String DB_PASSWORD;
+    private static String DB_REPLICA_HOST;
     
     static {
         try {
@@ -38,6 +41,7 @@ public class DatabaseConfiguration {
         DB_NAME = getEnv("DB_NAME", "asyncContentSummariser");
         DB_USER = getEnv("DB_USER", "root");
         DB_PASSWORD = getEnv("DB_PASSWORD", "");
+        DB_REPLICA_HOST = getEnv("DB_REPLICA_HOST", "");
     }
     
     private static void loadEnv() {
@@ -68,7 +72,7 @@ public class DatabaseConfiguration {
         }
     }
     
-    private static String getEnv(String key, String defaultValue) {
+    public static String getEnv(String key, String defaultValue) {
         loadEnv();
         
         if (envMap.containsKey(key) && !envMap.get(key).isEmpty()) {
@@ -83,12 +87,95 @@ public class DatabaseConfiguration {
         return defaultValue;
     }
     
+    public static int getIntEnv(String key, int defaultValue) {
+        String value = getEnv(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Warning: invalid value for " + key + ", using default: " + defaultValue);
+            return defaultValue;
+        }
+    }
+    
+    public static boolean getBooleanEnv(String key, boolean defaultValue) {
+        String value = getEnv(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        return "true".equalsIgnoreCase(value.trim()) || "1".equals(value.trim());
+    }
+    
+    /**
+     * Borrows a connection from the pool; closing it returns it to the pool
+     */
     public static Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            String dbUrl = "jdbc:mysql://" + DB_HOST + ":" + DB_PORT + "/" + DB_NAME + "?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true";
-            connection = DriverManager.getConnection(dbUrl, DB_USER, DB_PASSWORD);
+        return getDataSource().getConnection();
+    }
+    
+    public static DataSource getDataSource() {
+        if (pool == null) {
+            synchronized (DatabaseConfiguration.class) {
+                if (pool == null) {
+                    pool = createPool(DB_HOST, DB_PORT, DB_USER, DB_PASSWORD);
+                }
+            }
+        }
+        return pool;
+    }
+    
+    /**
+     * Whether a read replica is configured (DB_REPLICA_HOST)
+     */
+    public static boolean hasReplica() {
+        return !DB_REPLICA_HOST.isEmpty();
+    }
+    
+    /**
+     * Borrows a connection for reads that tolerate replication lag: from the replica pool if one is configured,
+     * otherwise from the primary
+     */
+    public static Connection getReadConnection() throws SQLException {
+        return getReadDataSource().getConnection();
+    }
+    
+    public static DataSource getReadDataSource() {
+        if (!hasReplica()) {
+            return getDataSource();
+        }
+        if (replicaPool == null) {
+            synchronized (DatabaseConfiguration.class) {
+                if (replicaPool == null) {
+                    replicaPool = createPool(
+                            DB_REPLICA_HOST,
+                            getEnv("DB_REPLICA_PORT", DB_PORT),
+                            getEnv("DB_REPLICA_USER", DB_USER),
+                            getEnv("DB_REPLICA_PASSWORD", DB_PASSWORD));
+                }
+            }
         }
-        return connection;
+        return replicaPool;
+    }
+    
+    private static ConnectionPool createPool(String host, String port, String user, String password) {
+        // Server-side prepared statements, cached per connection by the driver
+        String dbUrl = "jdbc:mysql://" + host + ":" + port + "/" + DB_NAME + "?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true" +
+                "&useServerPrepStmts=true&cachePrepStmts=true" +
+                "&prepStmtCacheSize=" + getIntEnv("DB_PREP_STMT_CACHE_SIZE", 250) +
+                "&prepStmtCacheSqlLimit=2048";
+        ConnectionPool connectionPool = new ConnectionPool(
+                dbUrl, user, password,
+                getIntEnv("DB_POOL_MIN_SIZE", 2),
+                getIntEnv("DB_POOL_MAX_SIZE", 10),
+                getIntEnv("DB_POOL_CONNECTION_TIMEOUT_MS", 30000),
+                getIntEnv("DB_POOL_VALIDATION_IDLE_MS", 5000),
+                getIntEnv("DB_POOL_IDLE_TIMEOUT_MS", 600000),
+                getIntEnv("DB_POOL_LEAK_DETECTION_MS", 60000),
+                getBooleanEnv("DB_POOL_LEAK_TRACE", false));
+        connectionPool.warmUp();
+        return connectionPool;
     }
     
     private static Connection getConnectionWithoutDb() throws SQLException {
@@ -97,20 +184,24 @@ public class DatabaseConfiguration {
     }
     
     public static void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                connection = null;
+        synchronized (DatabaseConfiguration.class) {
+            if (pool != null) {
+                pool.close();
+                pool = null;
+            }
+            if (replicaPool != null) {
+                replicaPool.close();
+                replicaPool = null;
             }
-        } catch (SQLException e) {
-            System.err.println("Error closing connection: " + e.getMessage());
         }
     }
     
     public static void initialize() {
         try {
             createDatabaseIfNotExists();
-            createTablesIfNotExists();
+            try (Connection conn = getConnection()) {
+                SchemaMigrator.migrate(conn);
+            }
         } catch (SQLException e) {
             System.err.println("Error initializing database: " + e.getMessage());
             e.printStackTrace();
@@ -132,48 +223,4 @@ public class DatabaseConfiguration {
             conn.close();
         }
     }
-    
-    private static void createTablesIfNotExists() throws SQLException {
-        Connection conn = getConnection();
-        try (Statement stmt = conn.createStatement()) {
-            var resultSet = stmt.executeQuery("SHOW TABLES LIKE 'users'");
-            boolean usersExists = resultSet.next();
-            resultSet.close();
-            
-            if (!usersExists) {
-                String createUsersTable = "CREATE TABLE users (" +
-                        "id VARCHAR(255) PRIMARY KEY, " +
-                        "name VARCHAR(255) NOT NULL, " +
-                        "jobIDs TEXT, " +
-                        "userType VARCHAR(20) NOT NULL, " +
-                        "createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                        "updatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP" +
-                        ")";
-                stmt.executeUpdate(createUsersTable);
-                System.out.println("Table 'users' created successfully!");
-            }
-            
-            // Check and create Jobs table
-            resultSet = stmt.executeQuery("SHOW TABLES LIKE 'jobs'");
-            boolean jobsExists = resultSet.next();
-            resultSet.close();
-            
-            if (!jobsExists) {
-                String createJobsTable = "CREATE TABLE jobs (" +
-                        "id VARCHAR(255) PRIMARY KEY, " +
-                        "userId VARCHAR(255) NOT NULL, " +
-                        "inputContent TEXT NOT NULL, " +
-                        "isUrl BOOLEAN NOT NULL DEFAULT FALSE, " +
-                        "outputContent TEXT, " +
-                        "status VARCHAR(20) NOT NULL DEFAULT 'QUEUED', " +
-                        "createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                        "updatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
-                        "FOREIGN KEY (userId) REFERENCES users(id) ON DELETE CASCADE" +
-                        ")";
-                stmt.executeUpdate(createJobsTable);
-                System.out.println("Table 'jobs' created successfully!");
-            }
-        }
-    }
 }
-
@@ -0,0 +1,213 @@
+package config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Versioned schema migrations, applied in order at startup and recorded in schema_version.
+ * Every migration is idempotent, so databases created before the runner existed
+ * (tables and columns already present) migrate cleanly.
+ */
+public class SchemaMigrator {
+    private static final String LOCK_NAME = "schema_migrations";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+    
+    private static final List<Migration> MIGRATIONS = new ArrayList<>();
+    
+    static {
+        MIGRATIONS.add(new Migration(1, "Create users and jobs tables", stmt -> {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS users (" +
+                    "id VARCHAR(255) PRIMARY KEY, " +
+                    "name VARCHAR(255) NOT NULL, " +
+                    "jobIDs TEXT, " +
+                    "userType VARCHAR(20) NOT NULL, " +
+                    "createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                    "updatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP" +
+                    ")");
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS jobs (" +
+                    "id VARCHAR(255) PRIMARY KEY, " +
+                    "userId VARCHAR(255) NOT NULL, " +
+                    "inputContent TEXT NOT NULL, " +
+                    "isUrl BOOLEAN NOT NULL DEFAULT FALSE, " +
+                    "outputContent TEXT, " +
+                    "status VARCHAR(20) NOT NULL DEFAULT 'QUEUED', " +
+                    "createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                    "updatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
+                    "FOREIGN KEY (userId) REFERENCES users(id) ON DELETE CASCADE" +
+                    ")");
+        }));
+        
+        MIGRATIONS.add(new Migration(2, "Add jobs.cacheKey and jobs.nearDuplicateOf", stmt -> {
+            addColumnIfNotExists(stmt, "jobs", "cacheKey", "VARCHAR(64)");
+            addColumnIfNotExists(stmt, "jobs", "nearDuplicateOf", "VARCHAR(64)");
+        }));
+        
+        MIGRATIONS.add(new Migration(3, "Create summary_cache table", stmt -> {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS summary_cache (" +
+                    "cacheKey VARCHAR(64) NOT NULL, " +
+                    "summary TEXT NOT NULL, " +
+                    "createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                    "updatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
+                    "UNIQUE KEY uk_summary_cache_key (cacheKey)" +
+                    ")");
+        }));
+        
+        // Worker dispatch (WHERE status = ? ORDER BY createdAt) and per-user listings become index range scans
+        MIGRATIONS.add(new Migration(4, "Index jobs by (status, createdAt) and (userId, createdAt)", stmt -> {
+            createIndexIfNotExists(stmt, "jobs", "idx_jobs_status_created", "status, createdAt");
+            createIndexIfNotExists(stmt, "jobs", "idx_jobs_user_created", "userId, createdAt");
+        }));
+        
+        // Job IDs are UUIDs and keys are hex digests: fixed-width single-byte columns keep the
+        // primary key and every secondary index (which embeds it) small
+        MIGRATIONS.add(new Migration(5, "Compact fixed-width job ID and cache key columns", stmt -> {
+            stmt.executeUpdate("ALTER TABLE jobs " +
+                    "MODIFY id CHAR(36) CHARACTER SET ascii COLLATE ascii_bin NOT NULL, " +
+                    "MODIFY cacheKey VARCHAR(64) CHARACTER SET ascii COLLATE ascii_bin, " +
+                    "MODIFY nearDuplicateOf VARCHAR(64) CHARACTER SET ascii COLLATE ascii_bin");
+            stmt.executeUpdate("ALTER TABLE summary_cache " +
+                    "MODIFY cacheKey VARCHAR(64) CHARACTER SET ascii COLLATE ascii_bin NOT NULL");
+        }));
+        
+        // Bodies move out of the hot jobs table; rows written before this keep their inline TEXT
+        MIGRATIONS.add(new Migration(6, "Content-addressed compressed storage for job inputs and outputs", stmt -> {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS content_blobs (" +
+                    "hash CHAR(64) CHARACTER SET ascii COLLATE ascii_bin PRIMARY KEY, " +
+                    "data MEDIUMBLOB NOT NULL, " +
+                    "contentLength INT NOT NULL, " +
+                    "createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    ")");
+            addColumnIfNotExists(stmt, "jobs", "inputHash", "CHAR(64) CHARACTER SET ascii COLLATE ascii_bin");
+            addColumnIfNotExists(stmt, "jobs", "outputHash", "CHAR(64) CHARACTER SET ascii COLLATE ascii_bin");
+            stmt.executeUpdate("ALTER TABLE jobs MODIFY inputContent TEXT NULL");
+        }));
+        
+        // Lets the retention purger check whether a purged job's blobs are still referenced
+        MIGRATIONS.add(new Migration(7, "Index jobs by inputHash and outputHash", stmt -> {
+            createIndexIfNotExists(stmt, "jobs", "idx_jobs_input_hash", "inputHash");
+            createIndexIfNotExists(stmt, "jobs", "idx_jobs_output_hash", "outputHash");
+        }));
+        
+        // Written in the submit transaction; OutboxRelay moves committed entries into the in-memory queue
+        MIGRATIONS.add(new Migration(8, "Create job_outbox table", stmt -> {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS job_outbox (" +
+                    "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "jobId CHAR(36) CHARACTER SET ascii COLLATE ascii_bin NOT NULL, " +
+                    "createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    ")");
+        }));
+        
+        // Summarization strategy chosen at submit time; NULL is the default model strategy
+        MIGRATIONS.add(new Migration(9, "Add jobs.strategy", stmt -> {
+            addColumnIfNotExists(stmt, "jobs", "strategy", "VARCHAR(32)");
+        }));
+        
+        // Write-behind creates that failed permanently; their job IDs were already returned to clients
+        MIGRATIONS.add(new Migration(10, "Create job_dead_letters table", stmt -> {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS job_dead_letters (" +
+                    "jobId CHAR(36) CHARACTER SET ascii COLLATE ascii_bin PRIMARY KEY, " +
+                    "userId VARCHAR(255), " +
+                    "reason VARCHAR(512), " +
+                    "createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    ")");
+        }));
+        
+        // The orphan blob sweep after a partition drop covers only blobs stored since the previous one
+        MIGRATIONS.add(new Migration(11, "Track the content blob sweep watermark", stmt -> {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS retention_watermarks (" +
+                    "name VARCHAR(64) CHARACTER SET ascii COLLATE ascii_bin PRIMARY KEY, " +
+                    "watermarkMs BIGINT NOT NULL" +
+                    ")");
+            createIndexIfNotExists(stmt, "content_blobs", "idx_content_blobs_created", "createdAt");
+        }));
+    }
+    
+    /**
+     * Applies all pending migrations, holding a MySQL named lock so concurrent nodes do not race
+     */
+    public static void migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT PRIMARY KEY, " +
+                    "description VARCHAR(255) NOT NULL, " +
+                    "appliedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    ")");
+            
+            acquireLock(stmt);
+            try {
+                Set<Integer> applied = new HashSet<>();
+                try (ResultSet rs = stmt.executeQuery("SELECT version FROM schema_version")) {
+                    while (rs.next()) {
+                        applied.add(rs.getInt("version"));
+                    }
+                }
+                
+                for (Migration migration : MIGRATIONS) {
+                    if (applied.contains(migration.version)) continue;
+                    
+                    migration.body.apply(stmt);
+                    try (PreparedStatement insert = conn.prepareStatement(
+                            "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                        insert.setInt(1, migration.version);
+                        insert.setString(2, migration.description);
+                        insert.executeUpdate();
+                    }
+                    System.out.println("Applied migration " + migration.version + ": " + migration.description);
+                }
+            } finally {
+                stmt.executeQuery("SELECT RELEASE_LOCK('" + LOCK_NAME + "')").close();
+            }
+        }
+    }
+    
+    private static void acquireLock(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT GET_LOCK('" + LOCK_NAME + "', " + LOCK_TIMEOUT_SECONDS + ")")) {
+            if (!rs.next() || rs.getInt(1) != 1) {
+                throw new SQLException("Could not acquire schema migration lock");
+            }
+        }
+    }
+    
+    private static void addColumnIfNotExists(Statement stmt, String table, String column, String definition) throws SQLException {
+        boolean exists;
+        try (ResultSet rs = stmt.executeQuery("SHOW COLUMNS FROM " + table + " LIKE '" + column + "'")) {
+            exists = rs.next();
+        }
+        if (!exists) {
+            stmt.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+    
+    private static void createIndexIfNotExists(Statement stmt, String table, String index, String columns) throws SQLException {
+        boolean exists;
+        try (ResultSet rs = stmt.executeQuery("SHOW INDEX FROM " + table + " WHERE Key_name = '" + index + "'")) {
+            exists = rs.next();
+        }
+        if (!exists) {
+            stmt.executeUpdate("CREATE INDEX " + index + " ON " + table + " (" + columns + ")");
+        }
+    }
+    
+    private interface MigrationBody {
+        void apply(Statement stmt) throws SQLException;
+    }
+    
+    private static class Migration {
+        final int version;
+        final String description;
+        final MigrationBody body;
+        
+        Migration(int version, String description, MigrationBody body) {
+            this.version = version;
+            this.description = description;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package dao;
+
+import config.DatabaseConfiguration;
+import util.CompressionUtils;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Content-addressed storage for job inputs and outputs.
+ * Each distinct body is stored once, compressed, keyed by the SHA-256 of its text;
+ * jobs rows only reference the hash.
+ */
+public class ContentBlobDao {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String SWEEP_WATERMARK = "content_blobs";
+    
+    /**
+     * Stores the content if no blob with the same hash exists yet and returns the hash
+     */
+    public String store(Connection conn, String content) throws SQLException {
+        if (content == null) return null;
+        String hash = hash(content);
+        String sql = "INSERT IGNORE INTO content_blobs (hash, data, contentLength) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, hash);
+            stmt.setBytes(2, CompressionUtils.compress(content));
+            stmt.setInt(3, content.length());
+            stmt.executeUpdate();
+        }
+        return hash;
+    }
+    
+    /**
+     * Stores a set of hash -> content entries in one batch, skipping hashes already present
+     */
+    public void storeAll(Connection conn, Map<String, String> blobs) throws SQLException {
+        if (blobs.isEmpty()) return;
+        String sql = "INSERT IGNORE INTO content_blobs (hash, data, contentLength) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (Map.Entry<String, String> entry : blobs.entrySet()) {
+                stmt.setString(1, entry.getKey());
+                stmt.setBytes(2, CompressionUtils.compress(entry.getValue()));
+                stmt.setInt(3, entry.getValue().length());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+    
+    /**
+     * Deletes those of the given blobs that no job references any more. Must run in a transaction:
+     * the blobs are locked first, which waits for writers still storing one of them (they store the
+     * blob and reference it in one transaction), then references are checked with locking reads,
+     * which see every committed job rather than the transaction's snapshot
+     */
+    public int deleteUnreferenced(Connection conn, Collection<String> hashes) throws SQLException {
+        if (hashes.isEmpty()) return 0;
+        Set<String> unreferenced = selectHashes(conn, "SELECT hash FROM content_blobs WHERE hash IN (%s) FOR UPDATE", hashes);
+        if (unreferenced.isEmpty()) return 0;
+        unreferenced.removeAll(selectHashes(conn, "SELECT inputHash FROM jobs WHERE inputHash IN (%s) LOCK IN SHARE MODE", unreferenced));
+        if (unreferenced.isEmpty()) return 0;
+        unreferenced.removeAll(selectHashes(conn, "SELECT outputHash FROM jobs WHERE outputHash IN (%s) LOCK IN SHARE MODE", unreferenced));
+        if (unreferenced.isEmpty()) return 0;
+        String sql = "DELETE FROM content_blobs WHERE hash IN (" + placeholders(unreferenced.size()) + ")";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (String hash : unreferenced) {
+                stmt.setString(index++, hash);
+            }
+            return stmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * Runs a query whose %s is replaced by one placeholder per hash and returns the first column of every row
+     */
+    private static Set<String> selectHashes(Connection conn, String sql, Collection<String> hashes) throws SQLException {
+        Set<String> found = new HashSet<>();
+        try (PreparedStatement stmt = conn.prepareStatement(String.format(sql, placeholders(hashes.size())))) {
+            int index = 1;
+            for (String hash : hashes) {
+                stmt.setString(index++, hash);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    found.add(rs.getString(1));
+                }
+            }
+        }
+        return found;
+    }
+    
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+    
+    /**
+     * Keyset page of the orphan sweep in (createdAt, hash) order: scans up to limit blobs first stored in
+     * [createdFrom, createdBefore) after the given position (null to start; createdFrom null for no lower
+     * bound), deletes the unreferenced ones, and returns the position of the last one scanned (null when done)
+     */
+    public SweepPosition sweepUnreferenced(Timestamp createdFrom, Timestamp createdBefore, SweepPosition after, int limit) throws SQLException {
+        List<String> hashes = new ArrayList<>();
+        SweepPosition last = null;
+        try (Connection conn = DatabaseConfiguration.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT hash, createdAt FROM content_blobs WHERE createdAt >= ? AND createdAt < ? " +
+                    "AND (createdAt > ? OR (createdAt = ? AND hash > ?)) ORDER BY createdAt, hash LIMIT ?")) {
+                Timestamp from = createdFrom != null ? createdFrom : new Timestamp(0);
+                stmt.setTimestamp(1, from);
+                stmt.setTimestamp(2, createdBefore);
+                stmt.setTimestamp(3, after != null ? after.createdAt : new Timestamp(0));
+                stmt.setTimestamp(4, after != null ? after.createdAt : new Timestamp(0));
+                stmt.setString(5, after != null ? after.hash : "");
+                stmt.setInt(6, limit);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        hashes.add(rs.getString("hash"));
+                        last = new SweepPosition(rs.getTimestamp("createdAt"), rs.getString("hash"));
+                    }
+                }
+            }
+            conn.setAutoCommit(false);
+            try {
+                deleteUnreferenced(conn, hashes);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        return hashes.size() < limit ? null : last;
+    }
+    
+    /**
+     * Deletes those of the given blobs that no job references any more, in a transaction of its own
+     */
+    public int sweepUnreferenced(Collection<String> hashes) throws SQLException {
+        if (hashes.isEmpty()) return 0;
+        try (Connection conn = DatabaseConfiguration.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int deleted = deleteUnreferenced(conn, hashes);
+                conn.commit();
+                return deleted;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+    
+    /**
+     * Blobs first stored before this time have been swept; null if no sweep has completed yet
+     */
+    public Timestamp sweptBefore() throws SQLException {
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT watermarkMs FROM retention_watermarks WHERE name = ?")) {
+            stmt.setString(1, SWEEP_WATERMARK);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? new Timestamp(rs.getLong("watermarkMs")) : null;
+            }
+        }
+    }
+    
+    /**
+     * Records a completed sweep up to the given time; the watermark never moves back
+     */
+    public void setSweptBefore(Timestamp sweptBefore) throws SQLException {
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "INSERT INTO retention_watermarks (name, watermarkMs) VALUES (?, ?) " +
+                     "ON DUPLICATE KEY UPDATE watermarkMs = GREATEST(watermarkMs, VALUES(watermarkMs))")) {
+            stmt.setString(1, SWEEP_WATERMARK);
+            stmt.setLong(2, sweptBefore.getTime());
+            stmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * Decodes a blob column read through a join, or null if the job had no blob reference
+     */
+    public static String decode(byte[] data) throws SQLException {
+        if (data == null) return null;
+        try {
+            return CompressionUtils.decompress(data);
+        } catch (Exception e) {
+            throw new SQLException("Corrupt content blob: " + e.getMessage(), e);
+        }
+    }
+    
+    public static String hash(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /**
+     * Where a blob sweep page ended: the (createdAt, hash) of the last blob it scanned
+     */
+    public static class SweepPosition {
+        public final Timestamp createdAt;
+        public final String hash;
+        
+        SweepPosition(Timestamp createdAt, String hash) {
+            this.createdAt = createdAt;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package dao;
+
+import config.DatabaseConfiguration;
+import java.sql.SQLException;
+
+/**
+ * Selects the storage backend: STORAGE_BACKEND=mysql (default) or embedded (in-process append-only log)
+ */
+public class DaoFactory {
+    private static final boolean EMBEDDED = "embedded".equalsIgnoreCase(DatabaseConfiguration.getEnv("STORAGE_BACKEND", "mysql"));
+    
+    public static boolean isEmbedded() {
+        return EMBEDDED;
+    }
+    
+    public static JobDao getJobDao() {
+        return EMBEDDED ? new EmbeddedJobDao() : new MySqlJobDao();
+    }
+    
+    public static UserDao getUserDao() {
+        return EMBEDDED ? new EmbeddedUserDao() : new MySqlUserDao();
+    }
+    
+    public static void initialize() {
+        if (!EMBEDDED) {
+            DatabaseConfiguration.initialize();
+            if (JobPartitionDao.isEnabled()) {
+                try {
+                    new JobPartitionDao().ensurePartitioned(Math.max(1, DatabaseConfiguration.getIntEnv("JOBS_PARTITION_MONTHS_AHEAD", 3)));
+                } catch (SQLException e) {
+                    System.err.println("Error partitioning jobs table: " + e.getMessage());
+                }
+            }
+            return;
+        }
+        EmbeddedJobLog log = EmbeddedJobLog.getInstance();
+        System.out.println("Embedded storage opened at " + log.getLogPath() + " (" + log.jobCount() + " jobs, " + log.userCount() + " users)");
+    }
+    
+    public static void shutdown() {
+        if (EMBEDDED) {
+            EmbeddedJobLog.getInstance().close();
+            return;
+        }
+        if (WriteBehindJournal.isEnabled()) {
+            WriteBehindJournal.getInstance().stop();
+        }
+        DatabaseConfiguration.closeConnection();
+    }
+}
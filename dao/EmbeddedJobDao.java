@@ -0,0 +1,104 @@
+package dao;
+
+import models.Job;
+import enums.JobStatus;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class EmbeddedJobDao implements JobDao {
+    
+    private final EmbeddedJobLog log = EmbeddedJobLog.getInstance();
+    
+    @Override
+    public void create(Job job) throws SQLException {
+        try {
+            log.createJob(job);
+        } catch (IOException e) {
+            throw new SQLException("Error writing job to embedded log: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public void submit(Job job, boolean enqueue) throws SQLException {
+        try {
+            log.submitJob(job, enqueue);
+        } catch (IOException e) {
+            throw new SQLException("Error writing job to embedded log: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public int drainOutbox(int limit, Consumer<List<String>> consumer) throws SQLException {
+        try {
+            return log.drainOutbox(limit, consumer);
+        } catch (IOException e) {
+            throw new SQLException("Error writing outbox to embedded log: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public void updateStatus(String jobId, JobStatus status) throws SQLException {
+        try {
+            log.updateStatus(jobId, status);
+        } catch (IOException e) {
+            throw new SQLException("Error writing job status to embedded log: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public void updateOutput(String jobId, String outputContent) throws SQLException {
+        try {
+            log.updateOutput(jobId, outputContent);
+        } catch (IOException e) {
+            throw new SQLException("Error writing job output to embedded log: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public void updateNearDuplicateOf(String jobId, String sourceCacheKey) throws SQLException {
+        try {
+            log.updateNearDuplicateOf(jobId, sourceCacheKey);
+        } catch (IOException e) {
+            throw new SQLException("Error writing job to embedded log: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public Job findById(String jobId) {
+        return log.findJob(jobId);
+    }
+    
+    @Override
+    public Job findStatusById(String jobId) {
+        return log.findJobStatus(jobId);
+    }
+    
+    @Override
+    public Job findResultById(String jobId) {
+        return log.findJob(jobId);
+    }
+    
+    @Override
+    public Job findNextQueuedJob() {
+        return log.findNextQueuedJob();
+    }
+    
+    @Override
+    public List<Job> findExpired(JobStatus status, Timestamp cutoff, Timestamp afterCreatedAt, String afterId,
+                                 int limit, boolean withContent) {
+        EmbeddedJobLog.JobKey after = afterCreatedAt != null ? new EmbeddedJobLog.JobKey(afterCreatedAt.getTime(), afterId) : null;
+        return log.findExpired(status, cutoff.getTime(), after, limit);
+    }
+    
+    @Override
+    public int deleteByIds(List<String> jobIds) throws SQLException {
+        try {
+            return log.deleteJobs(jobIds);
+        } catch (IOException e) {
+            throw new SQLException("Error deleting jobs from embedded log: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,922 @@
+package dao;
+
+import models.Job;
+import models.User;
+import enums.JobStatus;
+import enums.UserType;
+import config.DatabaseConfiguration;
+import util.CompressionUtils;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+
+/**
+ * In-process job and user store for STORAGE_BACKEND=embedded.
+ * Every write is appended to a single log file and applied to in-memory indexes
+ * (jobs by id, users by id, all and queued jobs by (createdAt, id)), so reads never touch the disk.
+ * On startup the log is replayed and a torn record at the tail is truncated. A log holding
+ * mostly superseded records is compacted into one record per live user and job, on startup
+ * and again whenever appends push it back over that ratio.
+ *
+ * Record layout: [int payloadLength][int crc32][byte type][fields...]
+ */
+public class EmbeddedJobLog {
+    private static final byte USER_CREATE = 1;
+    private static final byte USER_ADD_JOB = 2;
+    private static final byte JOB_CREATE = 3;
+    private static final byte JOB_STATUS = 4;
+    private static final byte JOB_OUTPUT = 5;
+    private static final byte JOB_NEAR_DUPLICATE = 6;
+    private static final byte JOB_DELETE = 7;
+    private static final byte USER_REMOVE_JOBS = 8;
+    private static final byte JOB_SUBMIT = 9;
+    private static final byte OUTBOX_DONE = 10;
+    private static final byte OUTBOX_ADD = 11;
+    
+    private static final String LOG_FILE = "jobs.log";
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+    private static EmbeddedJobLog instance;
+    
+    private final Path logPath;
+    private final long fsyncIntervalMs;
+    private final Map<String, User> users = new HashMap<>();
+    private final Map<String, Job> jobs = new HashMap<>();
+    // Creation-ordered indexes, the equivalent of idx_jobs_status_created
+    private final TreeMap<JobKey, String> byCreation = new TreeMap<>();
+    private final TreeMap<JobKey, String> queued = new TreeMap<>();
+    // Submitted job ids not yet handed to the queue, in submit order
+    private final Set<String> outbox = new LinkedHashSet<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(4096);
+    private final CRC32 crc = new CRC32();
+    
+    private FileChannel channel;
+    private DataOutputStream out;
+    private ScheduledExecutorService syncer;
+    private volatile boolean dirty;
+    private long recordCount;
+    // After a failed online compaction, the record count at which to try again
+    private long retryCompactionAt;
+    
+    private EmbeddedJobLog() {
+        this(Paths.get(DatabaseConfiguration.getEnv("EMBEDDED_DATA_DIR", "data")),
+            DatabaseConfiguration.getIntEnv("EMBEDDED_FSYNC_MS", 100));
+    }
+    
+    EmbeddedJobLog(Path dataDir, long fsyncIntervalMs) {
+        this.logPath = dataDir.resolve(LOG_FILE);
+        this.fsyncIntervalMs = Math.max(0, fsyncIntervalMs);
+        try {
+            Files.createDirectories(dataDir);
+            replay();
+            if (compactionDue()) {
+                compact();
+            }
+            openForAppend();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open embedded job log " + logPath + ": " + e.getMessage(), e);
+        }
+        
+        // Group fsync: appends reach the OS immediately and the disk at most fsyncIntervalMs later
+        if (fsyncIntervalMs > 0) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "embedded-job-log-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::sync, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    public static EmbeddedJobLog getInstance() {
+        if (instance == null) {
+            synchronized (EmbeddedJobLog.class) {
+                if (instance == null) {
+                    instance = new EmbeddedJobLog();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    public Path getLogPath() {
+        return logPath;
+    }
+    
+    public int jobCount() {
+        lock.readLock().lock();
+        try {
+            return jobs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public int userCount() {
+        lock.readLock().lock();
+        try {
+            return users.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public void createUser(User user) throws IOException {
+        User created = new User(user.getId(), user.getName(),
+                user.getJobIDs() != null ? new ArrayList<>(user.getJobIDs()) : new ArrayList<>(), user.getUserType());
+        lock.writeLock().lock();
+        try {
+            DataOutputStream record = beginRecord(USER_CREATE);
+            writeUser(record, created);
+            append();
+            users.put(created.getId(), created);
+        } finally {
+            unlockWrite();
+        }
+    }
+    
+    public User findUser(String userId) {
+        lock.readLock().lock();
+        try {
+            User user = users.get(userId);
+            return user != null ? copyOf(user) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public void addJobId(String userId, String jobId) throws IOException {
+        lock.writeLock().lock();
+        try {
+            User user = users.get(userId);
+            if (user == null) {
+                return;
+            }
+            DataOutputStream record = beginRecord(USER_ADD_JOB);
+            writeString(record, userId);
+            writeString(record, jobId);
+            append();
+            user.addJobID(jobId);
+        } finally {
+            unlockWrite();
+        }
+    }
+    
+    public void createJob(Job job) throws IOException {
+        Job created = copyOf(job);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        created.setCreatedAt(now);
+        created.setUpdatedAt(now);
+        lock.writeLock().lock();
+        try {
+            DataOutputStream record = beginRecord(JOB_CREATE);
+            writeJob(record, created);
+            writeJobExtras(record, created);
+            append();
+            putJob(created);
+        } finally {
+            unlockWrite();
+        }
+    }
+    
+    /**
+     * Creates the job, adds it to its user and optionally to the outbox as a single record, so all three survive a crash or none do
+     */
+    public void submitJob(Job job, boolean enqueue) throws IOException {
+        Job created = copyOf(job);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        created.setCreatedAt(now);
+        created.setUpdatedAt(now);
+        lock.writeLock().lock();
+        try {
+            DataOutputStream record = beginRecord(JOB_SUBMIT);
+            writeJob(record, created);
+            record.writeBoolean(enqueue);
+            writeJobExtras(record, created);
+            append();
+            applySubmit(created, enqueue);
+        } finally {
+            unlockWrite();
+        }
+    }
+    
+    /**
+     * Passes up to limit outbox job ids to the consumer, then records them as relayed
+     */
+    public int drainOutbox(int limit, Consumer<List<String>> consumer) throws IOException {
+        List<String> jobIds = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (String jobId : outbox) {
+                if (jobIds.size() >= limit) break;
+                jobIds.add(jobId);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (jobIds.isEmpty()) {
+            return 0;
+        }
+        
+        consumer.accept(jobIds);
+        lock.writeLock().lock();
+        try {
+            DataOutputStream record = beginRecord(OUTBOX_DONE);
+            writeStrings(record, jobIds);
+            append();
+            outbox.removeAll(jobIds);
+        } finally {
+            unlockWrite();
+        }
+        return jobIds.size();
+    }
+    
+    public void updateStatus(String jobId, JobStatus status) throws IOException {
+        long now = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            if (!jobs.containsKey(jobId)) {
+                return;
+            }
+            DataOutputStream record = beginRecord(JOB_STATUS);
+            writeString(record, jobId);
+            record.writeLong(now);
+            writeString(record, status.name());
+            append();
+            applyStatus(jobId, now, status);
+        } finally {
+            unlockWrite();
+        }
+    }
+    
+    public void updateOutput(String jobId, String outputContent) throws IOException {
+        long now = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            Job job = jobs.get(jobId);
+            if (job == null) {
+                return;
+            }
+            DataOutputStream record = beginRecord(JOB_OUTPUT);
+            writeString(record, jobId);
+            record.writeLong(now);
+            writeContent(record, outputContent);
+            append();
+            job.setOutputContent(outputContent);
+            job.setUpdatedAt(new Timestamp(now));
+        } finally {
+            unlockWrite();
+        }
+    }
+    
+    public void updateNearDuplicateOf(String jobId, String sourceCacheKey) throws IOException {
+        long now = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            Job job = jobs.get(jobId);
+            if (job == null) {
+                return;
+            }
+            DataOutputStream record = beginRecord(JOB_NEAR_DUPLICATE);
+            writeString(record, jobId);
+            record.writeLong(now);
+            writeString(record, sourceCacheKey);
+            append();
+            job.setNearDuplicateOf(sourceCacheKey);
+            job.setUpdatedAt(new Timestamp(now));
+        } finally {
+            unlockWrite();
+        }
+    }
+    
+    public Job findJob(String jobId) {
+        lock.readLock().lock();
+        try {
+            Job job = jobs.get(jobId);
+            return job != null ? copyOf(job) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Status projection: id, status and timestamps only, without copying the content
+     */
+    public Job findJobStatus(String jobId) {
+        lock.readLock().lock();
+        try {
+            Job job = jobs.get(jobId);
+            if (job == null) {
+                return null;
+            }
+            Job status = new Job(job.getId(), null, null, false, null, job.getStatus());
+            status.setCreatedAt(job.getCreatedAt());
+            status.setUpdatedAt(job.getUpdatedAt());
+            return status;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public Job findNextQueuedJob() {
+        lock.readLock().lock();
+        try {
+            Map.Entry<JobKey, String> first = queued.firstEntry();
+            return first != null ? copyOf(jobs.get(first.getValue())) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Keyset page of jobs in the status created before the cutoff, in (createdAt, id) order after the given position
+     */
+    public List<Job> findExpired(JobStatus status, long cutoff, JobKey after, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Job> page = new ArrayList<>();
+            Map<JobKey, String> range = after != null ? byCreation.tailMap(after, false) : byCreation;
+            for (Map.Entry<JobKey, String> entry : range.entrySet()) {
+                if (entry.getKey().createdAt >= cutoff || page.size() >= limit) {
+                    break;
+                }
+                Job job = jobs.get(entry.getValue());
+                if (job.getStatus() == status) {
+                    page.add(copyOf(job));
+                }
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public int deleteJobs(List<String> jobIds) throws IOException {
+        lock.writeLock().lock();
+        try {
+            List<String> existing = new ArrayList<>();
+            for (String jobId : jobIds) {
+                if (jobs.containsKey(jobId)) {
+                    existing.add(jobId);
+                }
+            }
+            if (existing.isEmpty()) {
+                return 0;
+            }
+            DataOutputStream record = beginRecord(JOB_DELETE);
+            writeStrings(record, existing);
+            append();
+            applyDelete(existing);
+            return existing.size();
+        } finally {
+            unlockWrite();
+        }
+    }
+    
+    public void removeJobIds(String userId, Collection<String> jobIds) throws IOException {
+        lock.writeLock().lock();
+        try {
+            User user = users.get(userId);
+            if (user == null || !user.getJobIDs().removeAll(jobIds)) {
+                return;
+            }
+            DataOutputStream record = beginRecord(USER_REMOVE_JOBS);
+            writeString(record, userId);
+            writeStrings(record, new ArrayList<>(jobIds));
+            append();
+        } finally {
+            unlockWrite();
+        }
+    }
+    
+    public void close() {
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        lock.writeLock().lock();
+        try {
+            if (channel != null) {
+                out.flush();
+                channel.force(false);
+                channel.close();
+                channel = null;
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing embedded job log: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private void sync() {
+        if (!dirty) {
+            return;
+        }
+        try {
+            dirty = false;
+            FileChannel current = channel;
+            if (current != null) {
+                current.force(false);
+            }
+        } catch (IOException e) {
+            dirty = true;
+            System.err.println("Error syncing embedded job log: " + e.getMessage());
+        }
+    }
+    
+    private DataOutputStream beginRecord(byte type) throws IOException {
+        if (channel == null) {
+            throw new IOException("Embedded job log is closed");
+        }
+        recordBuffer.reset();
+        DataOutputStream record = new DataOutputStream(recordBuffer);
+        record.writeByte(type);
+        return record;
+    }
+    
+    /**
+     * Frames the record in recordBuffer and writes it through to the OS (and to disk if EMBEDDED_FSYNC_MS=0)
+     */
+    private void append() throws IOException {
+        writeFramed(out);
+        out.flush();
+        recordCount++;
+        if (fsyncIntervalMs == 0) {
+            channel.force(false);
+        } else {
+            dirty = true;
+        }
+    }
+    
+    /**
+     * Releases the write lock, first compacting the log if the write just applied pushed it over the ratio
+     */
+    private void unlockWrite() {
+        try {
+            if (channel != null && compactionDue() && recordCount >= retryCompactionAt) {
+                compactOnline();
+            }
+        } catch (IOException e) {
+            System.err.println("Error reopening embedded job log after compaction: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private boolean compactionDue() {
+        return recordCount > 2 * (users.size() + jobs.size()) + 1000;
+    }
+    
+    /**
+     * Compacts the log under the write lock, so no append lands in the old file after the snapshot is taken.
+     * Every applied record is already in the old file, so a failed compaction keeps it and is retried once
+     * the log has doubled again.
+     */
+    private void compactOnline() throws IOException {
+        out.flush();
+        channel.force(false);
+        dirty = false;
+        channel.close();
+        channel = null;
+        try {
+            compact();
+            retryCompactionAt = 0;
+        } catch (IOException e) {
+            retryCompactionAt = 2 * recordCount;
+            System.err.println("Error compacting embedded job log, keeping the uncompacted one: " + e.getMessage());
+        } finally {
+            openForAppend();
+        }
+    }
+    
+    private void writeFramed(DataOutputStream target) throws IOException {
+        byte[] payload = recordBuffer.toByteArray();
+        crc.reset();
+        crc.update(payload);
+        target.writeInt(payload.length);
+        target.writeInt((int) crc.getValue());
+        target.write(payload);
+    }
+    
+    private void openForAppend() throws IOException {
+        channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 65536));
+    }
+    
+    private void replay() throws IOException {
+        if (!Files.exists(logPath)) {
+            return;
+        }
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logPath), 65536))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    int checksum = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                    applyRecord(new DataInputStream(new ByteArrayInputStream(payload)));
+                } catch (EOFException e) {
+                    break;
+                }
+                validLength += 8 + length;
+                recordCount++;
+            }
+        }
+        
+        long fileLength = Files.size(logPath);
+        if (validLength < fileLength) {
+            // Torn or corrupt tail from a crash mid-append; everything before it is intact
+            System.err.println("Warning: truncating " + (fileLength - validLength) + " bytes of incomplete records from " + logPath);
+            try (FileChannel truncate = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+                truncate.truncate(validLength);
+                truncate.force(true);
+            }
+        }
+    }
+    
+    private void applyRecord(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case USER_CREATE: {
+                User user = readUser(in);
+                users.put(user.getId(), user);
+                break;
+            }
+            case USER_ADD_JOB: {
+                User user = users.get(readString(in));
+                String jobId = readString(in);
+                if (user != null) {
+                    user.addJobID(jobId);
+                }
+                break;
+            }
+            case JOB_CREATE: {
+                Job job = readJob(in);
+                readJobExtras(in, job);
+                putJob(job);
+                break;
+            }
+            case JOB_STATUS: {
+                String jobId = readString(in);
+                long at = in.readLong();
+                applyStatus(jobId, at, JobStatus.valueOf(readString(in)));
+                break;
+            }
+            case JOB_OUTPUT: {
+                Job job = jobs.get(readString(in));
+                long at = in.readLong();
+                String output = readContent(in);
+                if (job != null) {
+                    job.setOutputContent(output);
+                    job.setUpdatedAt(new Timestamp(at));
+                }
+                break;
+            }
+            case JOB_NEAR_DUPLICATE: {
+                Job job = jobs.get(readString(in));
+                long at = in.readLong();
+                String sourceCacheKey = readString(in);
+                if (job != null) {
+                    job.setNearDuplicateOf(sourceCacheKey);
+                    job.setUpdatedAt(new Timestamp(at));
+                }
+                break;
+            }
+            case JOB_SUBMIT: {
+                Job job = readJob(in);
+                boolean enqueue = in.readBoolean();
+                readJobExtras(in, job);
+                applySubmit(job, enqueue);
+                break;
+            }
+            case OUTBOX_ADD:
+                outbox.addAll(readStrings(in));
+                break;
+            case OUTBOX_DONE:
+                outbox.removeAll(readStrings(in));
+                break;
+            case JOB_DELETE:
+                applyDelete(readStrings(in));
+                break;
+            case USER_REMOVE_JOBS: {
+                User user = users.get(readString(in));
+                List<String> jobIds = readStrings(in);
+                if (user != null) {
+                    user.getJobIDs().removeAll(jobIds);
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown record type " + type);
+        }
+    }
+    
+    /**
+     * Rewrites the log as one record per live user and job, then atomically replaces it
+     */
+    private void compact() throws IOException {
+        Path compacted = logPath.resolveSibling(LOG_FILE + ".compact");
+        long records = 0;
+        try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream targetOut = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(target), 65536))) {
+            for (User user : users.values()) {
+                recordBuffer.reset();
+                DataOutputStream record = new DataOutputStream(recordBuffer);
+                record.writeByte(USER_CREATE);
+                writeUser(record, user);
+                writeFramed(targetOut);
+                records++;
+            }
+            for (String jobId : byCreation.values()) {
+                recordBuffer.reset();
+                DataOutputStream record = new DataOutputStream(recordBuffer);
+                record.writeByte(JOB_CREATE);
+                writeJob(record, jobs.get(jobId));
+                writeJobExtras(record, jobs.get(jobId));
+                writeFramed(targetOut);
+                records++;
+            }
+            if (!outbox.isEmpty()) {
+                recordBuffer.reset();
+                DataOutputStream record = new DataOutputStream(recordBuffer);
+                record.writeByte(OUTBOX_ADD);
+                writeStrings(record, new ArrayList<>(outbox));
+                writeFramed(targetOut);
+                records++;
+            }
+            targetOut.flush();
+            target.force(true);
+        }
+        Files.move(compacted, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("Compacted embedded job log from " + recordCount + " to " + records + " records");
+        recordCount = records;
+    }
+    
+    private void putJob(Job job) {
+        JobKey key = new JobKey(job);
+        jobs.put(job.getId(), job);
+        byCreation.put(key, job.getId());
+        if (job.getStatus() == JobStatus.QUEUED) {
+            queued.put(key, job.getId());
+        }
+    }
+    
+    private void applyStatus(String jobId, long at, JobStatus status) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            return;
+        }
+        job.setStatus(status);
+        job.setUpdatedAt(new Timestamp(at));
+        if (status == JobStatus.QUEUED) {
+            queued.put(new JobKey(job), jobId);
+        } else {
+            queued.remove(new JobKey(job));
+        }
+    }
+    
+    private void applySubmit(Job job, boolean enqueue) {
+        putJob(job);
+        User user = users.get(job.getUserId());
+        if (user != null) {
+            user.addJobID(job.getId());
+        }
+        if (enqueue) {
+            outbox.add(job.getId());
+        }
+    }
+    
+    private void applyDelete(List<String> jobIds) {
+        for (String jobId : jobIds) {
+            Job job = jobs.remove(jobId);
+            if (job != null) {
+                JobKey key = new JobKey(job);
+                byCreation.remove(key);
+                queued.remove(key);
+            }
+        }
+    }
+    
+    private static void writeUser(DataOutputStream out, User user) throws IOException {
+        writeString(out, user.getId());
+        writeString(out, user.getName());
+        writeString(out, user.getUserType().name());
+        List<String> jobIDs = user.getJobIDs() != null ? user.getJobIDs() : new ArrayList<>();
+        out.writeInt(jobIDs.size());
+        for (String jobId : jobIDs) {
+            writeString(out, jobId);
+        }
+    }
+    
+    private static User readUser(DataInputStream in) throws IOException {
+        String id = readString(in);
+        String name = readString(in);
+        UserType userType = UserType.valueOf(readString(in));
+        int count = in.readInt();
+        List<String> jobIDs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            jobIDs.add(readString(in));
+        }
+        return new User(id, name, jobIDs, userType);
+    }
+    
+    private static void writeJob(DataOutputStream out, Job job) throws IOException {
+        writeString(out, job.getId());
+        writeString(out, job.getUserId());
+        writeContent(out, job.getInputContent());
+        out.writeBoolean(job.isUrl());
+        writeContent(out, job.getOutputContent());
+        writeString(out, job.getStatus().name());
+        writeString(out, job.getCacheKey());
+        writeString(out, job.getNearDuplicateOf());
+        out.writeLong(job.getCreatedAt().getTime());
+        out.writeLong(job.getUpdatedAt().getTime());
+    }
+    
+    private static Job readJob(DataInputStream in) throws IOException {
+        String id = readString(in);
+        String userId = readString(in);
+        String inputContent = readContent(in);
+        boolean isUrl = in.readBoolean();
+        String outputContent = readContent(in);
+        JobStatus status = JobStatus.valueOf(readString(in));
+        Job job = new Job(id, userId, inputContent, isUrl, outputContent, status);
+        job.setCacheKey(readString(in));
+        job.setNearDuplicateOf(readString(in));
+        job.setCreatedAt(new Timestamp(in.readLong()));
+        job.setUpdatedAt(new Timestamp(in.readLong()));
+        return job;
+    }
+    
+    /**
+     * Job fields added after the record format was first written go at the end of JOB_CREATE and
+     * JOB_SUBMIT records, so logs written before them still replay (the fields stay unset)
+     */
+    private static void writeJobExtras(DataOutputStream out, Job job) throws IOException {
+        writeString(out, job.getStrategy());
+    }
+    
+    private static void readJobExtras(DataInputStream in, Job job) throws IOException {
+        if (in.available() > 0) {
+            job.setStrategy(readString(in));
+        }
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+    
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+    
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+    
+    /**
+     * Job bodies are stored deflate-compressed, like content_blobs in the MySQL backend
+     */
+    private static void writeContent(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] compressed = CompressionUtils.compress(value);
+        out.writeInt(compressed.length);
+        out.write(compressed);
+    }
+    
+    private static String readContent(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return CompressionUtils.decompress(bytes);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt job content: " + e.getMessage(), e);
+        }
+    }
+    
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+    
+    private static User copyOf(User user) {
+        return new User(user.getId(), user.getName(), new ArrayList<>(user.getJobIDs()), user.getUserType());
+    }
+    
+    private static Job copyOf(Job job) {
+        Job copy = new Job(job.getId(), job.getUserId(), job.getInputContent(), job.isUrl(),
+                job.getOutputContent(), job.getStatus());
+        copy.setCacheKey(job.getCacheKey());
+        copy.setNearDuplicateOf(job.getNearDuplicateOf());
+        copy.setStrategy(job.getStrategy());
+        copy.setCreatedAt(job.getCreatedAt());
+        copy.setUpdatedAt(job.getUpdatedAt());
+        return copy;
+    }
+    
+    /**
+     * Position of a job in creation order: (createdAt, id), matching the MySQL keyset order
+     */
+    public static class JobKey implements Comparable<JobKey> {
+        final long createdAt;
+        final String id;
+        
+        public JobKey(long createdAt, String id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+        
+        JobKey(Job job) {
+            this(job.getCreatedAt().getTime(), job.getId());
+        }
+        
+        @Override
+        public int compareTo(JobKey other) {
+            int byTime = Long.compare(createdAt, other.createdAt);
+            return byTime != 0 ? byTime : id.compareTo(other.id);
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof JobKey && compareTo((JobKey) o) == 0;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Long.hashCode(createdAt) * 31 + id.hashCode();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package dao;
+
+import models.User;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+
+public class EmbeddedUserDao implements UserDao {
+    
+    private final EmbeddedJobLog log = EmbeddedJobLog.getInstance();
+    
+    @Override
+    public void create(User user) throws SQLException {
+        try {
+            log.createUser(user);
+        } catch (IOException e) {
+            throw new SQLException("Error writing user to embedded log: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public User findById(String userId) {
+        return log.findUser(userId);
+    }
+    
+    @Override
+    public boolean exists(String userId) {
+        return log.findUser(userId) != null;
+    }
+    
+    @Override
+    public void addJobId(String userId, String jobId) throws SQLException {
+        try {
+            log.addJobId(userId, jobId);
+        } catch (IOException e) {
+            throw new SQLException("Error writing user to embedded log: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public void removeJobIds(Map<String, Set<String>> jobIdsByUser) throws SQLException {
+        try {
+            for (Map.Entry<String, Set<String>> entry : jobIdsByUser.entrySet()) {
+                log.removeJobIds(entry.getKey(), entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new SQLException("Error writing user to embedded log: " + e.getMessage(), e);
+        }
+    }
+}
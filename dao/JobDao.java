@@ -2,120 +2,59 @@ package dao;
 
 import models.Job;
 import enums.JobStatus;
-import config.DatabaseConfiguration;
-import java.sql.*;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.function.Consumer;
 
-public class JobDao {
+/**
+ * Job persistence, implemented by MySqlJobDao and EmbeddedJobDao (see DaoFactory)
+ */
+public interface JobDao {
     
-    public void create(Job job) throws SQLException {
-        String sql = "INSERT INTO jobs (id, userId, inputContent, isUrl, outputContent, status) VALUES (?, ?, ?, ?, ?, ?)";
-        try (Connection conn = DatabaseConfiguration.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, job.getId());
-            stmt.setString(2, job.getUserId());
-            stmt.setString(3, job.getInputContent());
-            stmt.setBoolean(4, job.isUrl());
-            stmt.setString(5, job.getOutputContent());
-            stmt.setString(6, job.getStatus().name());
-            stmt.executeUpdate();
-        }
-    }
+    void create(Job job) throws SQLException;
     
-    public void updateStatus(String jobId, JobStatus status) throws SQLException {
-        String sql = "UPDATE jobs SET status = ? WHERE id = ?";
-        try (Connection conn = DatabaseConfiguration.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, status.name());
-            stmt.setString(2, jobId);
-            stmt.executeUpdate();
-        }
-    }
+    /**
+     * Creates the job and appends it to its user's job list in one transaction. When enqueue is set, the same
+     * transaction writes an outbox entry that OutboxRelay later hands to the queue.
+     */
+    void submit(Job job, boolean enqueue) throws SQLException;
     
-    public void updateOutput(String jobId, String outputContent) throws SQLException {
-        String sql = "UPDATE jobs SET outputContent = ? WHERE id = ?";
-        try (Connection conn = DatabaseConfiguration.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, outputContent);
-            stmt.setString(2, jobId);
-            stmt.executeUpdate();
-        }
-    }
+    /**
+     * Passes up to limit committed outbox job IDs, oldest first, to the consumer and removes them once it
+     * returns; returns the number relayed. Delivery is at-least-once.
+     */
+    int drainOutbox(int limit, Consumer<List<String>> consumer) throws SQLException;
     
-    public Job findById(String jobId) throws SQLException {
-        String sql = "SELECT * FROM jobs WHERE id = ?";
-        try (Connection conn = DatabaseConfiguration.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, jobId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return mapResultSetToJob(rs);
-                }
-                return null;
-            }
-        }
-    }
+    void updateStatus(String jobId, JobStatus status) throws SQLException;
     
-    public Job findNextQueuedJob() throws SQLException {
-        String sql = "SELECT * FROM jobs WHERE status = 'QUEUED' ORDER BY createdAt ASC LIMIT 1";
-        try (Connection conn = DatabaseConfiguration.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next()) {
-                return mapResultSetToJob(rs);
-            }
-            return null;
-        }
-    }
+    void updateOutput(String jobId, String outputContent) throws SQLException;
     
-    private Job mapResultSetToJob(ResultSet rs) throws SQLException {
-        return new Job(
-            rs.getString("id"),
-            rs.getString("userId"),
-            rs.getString("inputContent"),
-            rs.getBoolean("isUrl"),
-            rs.getString("outputContent"),
-            JobStatus.valueOf(rs.getString("status"))
-        );
-    }
+    void updateNearDuplicateOf(String jobId, String sourceCacheKey) throws SQLException;
     
-    public java.sql.Timestamp getCreatedAt(String jobId) throws SQLException {
-        TimestampPair timestamps = getTimestamps(jobId);
-        return timestamps != null ? timestamps.createdAt : null;
-    }
+    Job findById(String jobId) throws SQLException;
     
-    public java.sql.Timestamp getUpdatedAt(String jobId) throws SQLException {
-        TimestampPair timestamps = getTimestamps(jobId);
-        return timestamps != null ? timestamps.updatedAt : null;
-    }
+    /**
+     * Status projection: id, status and timestamps only
+     */
+    Job findStatusById(String jobId) throws SQLException;
     
     /**
-     * Gets both timestamps in a single query for efficiency
+     * Result projection: everything the result response needs, including timestamps
      */
-    private TimestampPair getTimestamps(String jobId) throws SQLException {
-        String sql = "SELECT createdAt, updatedAt FROM jobs WHERE id = ?";
-        try (Connection conn = DatabaseConfiguration.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, jobId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return new TimestampPair(
-                        rs.getTimestamp("createdAt"),
-                        rs.getTimestamp("updatedAt")
-                    );
-                }
-                return null;
-            }
-        }
-    }
+    Job findResultById(String jobId) throws SQLException;
+    
+    Job findNextQueuedJob() throws SQLException;
     
-    private static class TimestampPair {
-        final java.sql.Timestamp createdAt;
-        final java.sql.Timestamp updatedAt;
-        
-        TimestampPair(java.sql.Timestamp createdAt, java.sql.Timestamp updatedAt) {
-            this.createdAt = createdAt;
-            this.updatedAt = updatedAt;
-        }
-    }
+    /**
+     * Keyset page of jobs in the status created before the cutoff, ordered by (createdAt, id) and
+     * starting after the given position (null for the first page). Bodies are only loaded when withContent is set.
+     */
+    List<Job> findExpired(JobStatus status, Timestamp cutoff, Timestamp afterCreatedAt, String afterId,
+                          int limit, boolean withContent) throws SQLException;
+    
+    /**
+     * Deletes the jobs, and any stored content no remaining job references; returns the number of jobs deleted
+     */
+    int deleteByIds(List<String> jobIds) throws SQLException;
 }
-
@@ -0,0 +1,44 @@
+package dao;
+
+import models.Job;
+import enums.JobStatus;
+import config.DatabaseConfiguration;
+import java.sql.*;
+
+/**
+ * Jobs whose journaled create could never be written (write-behind mode, e.g. the user was deleted
+ * before the flush). Their IDs were already handed out, so they read as FAILED rather than not found.
+ */
+public class JobDeadLetterDao {
+    
+    public void save(String jobId, String userId, String reason) throws SQLException {
+        String sql = "INSERT IGNORE INTO job_dead_letters (jobId, userId, reason) VALUES (?, ?, ?)";
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, jobId);
+            stmt.setString(2, userId);
+            stmt.setString(3, reason != null && reason.length() > 512 ? reason.substring(0, 512) : reason);
+            stmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * The dead-lettered job as a FAILED job without content, or null
+     */
+    public Job find(String jobId) throws SQLException {
+        String sql = "SELECT jobId, userId, createdAt FROM job_dead_letters WHERE jobId = ?";
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, jobId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Job job = new Job(rs.getString("jobId"), rs.getString("userId"), null, false, null, JobStatus.FAILED);
+                job.setCreatedAt(rs.getTimestamp("createdAt"));
+                job.setUpdatedAt(rs.getTimestamp("createdAt"));
+                return job;
+            }
+        }
+    }
+}
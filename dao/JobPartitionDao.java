@@ -0,0 +1,219 @@
+package dao;
+
+import models.Job;
+import enums.JobStatus;
+import config.DatabaseConfiguration;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Monthly RANGE partitioning of the jobs table on createdAt (JOBS_PARTITIONING=monthly, MySQL only).
+ * Expiring a month of jobs then becomes a partition drop instead of row-by-row deletes.
+ * Partitions are named pYYYYMM and hold jobs created in that month (UTC); pmax catches anything beyond the last one.
+ */
+public class JobPartitionDao {
+    private static final String LOCK_NAME = "jobs_partitioning";
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    
+    public static boolean isEnabled() {
+        return !DaoFactory.isEmbedded()
+                && "monthly".equalsIgnoreCase(DatabaseConfiguration.getEnv("JOBS_PARTITIONING", "none"));
+    }
+    
+    /**
+     * Converts jobs to a partitioned table on first run, then makes sure the coming months have partitions
+     */
+    public void ensurePartitioned(int monthsAhead) throws SQLException {
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             Statement stmt = conn.createStatement()) {
+            acquireLock(stmt);
+            try {
+                if (listPartitions(stmt).isEmpty()) {
+                    partitionByMonth(stmt, monthsAhead);
+                } else {
+                    addFuturePartitions(stmt, monthsAhead);
+                }
+            } finally {
+                stmt.executeQuery("SELECT RELEASE_LOCK('" + LOCK_NAME + "')").close();
+            }
+        }
+    }
+    
+    public List<JobPartition> listPartitions() throws SQLException {
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             Statement stmt = conn.createStatement()) {
+            return listPartitions(stmt);
+        }
+    }
+    
+    public boolean hasRowsWithStatus(String partition, Collection<JobStatus> statuses) throws SQLException {
+        if (statuses.isEmpty()) return false;
+        String sql = "SELECT 1 FROM jobs PARTITION (" + partition + ") WHERE status IN (" +
+                String.join(",", Collections.nCopies(statuses.size(), "?")) + ") LIMIT 1";
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (JobStatus status : statuses) {
+                stmt.setString(index++, status.name());
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+    
+    /**
+     * Keyset page of the partition's jobs in primary key order, after the given id (null for the first page)
+     */
+    public List<Job> findPage(String partition, String afterId, int limit, boolean withContent) throws SQLException {
+        String sql = (withContent ? MySqlJobDao.JOB_SELECT : "SELECT j.id, j.userId, j.status, j.createdAt, j.updatedAt ") +
+                "FROM jobs PARTITION (" + partition + ") j " +
+                (withContent ? MySqlJobDao.BLOB_JOINS : "") +
+                "WHERE j.id > ? ORDER BY j.id LIMIT ?";
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, afterId != null ? afterId : "");
+            stmt.setInt(2, limit);
+            List<Job> jobs = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    jobs.add(withContent ? MySqlJobDao.mapResultSetToJob(rs) : MySqlJobDao.mapResultSetToJobKey(rs));
+                }
+            }
+            return jobs;
+        }
+    }
+    
+    /**
+     * Hashes of the blobs the partition's jobs reference that were first stored before the given time
+     */
+    public Set<String> findBlobHashesCreatedBefore(String partition, Timestamp createdBefore) throws SQLException {
+        String sql = "SELECT b.hash FROM jobs PARTITION (" + partition + ") j JOIN content_blobs b ON b.hash = j.inputHash WHERE b.createdAt < ? " +
+                "UNION SELECT b.hash FROM jobs PARTITION (" + partition + ") j JOIN content_blobs b ON b.hash = j.outputHash WHERE b.createdAt < ?";
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setTimestamp(1, createdBefore);
+            stmt.setTimestamp(2, createdBefore);
+            Set<String> hashes = new HashSet<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    hashes.add(rs.getString(1));
+                }
+            }
+            return hashes;
+        }
+    }
+    
+    public void dropPartition(String partition) throws SQLException {
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE jobs DROP PARTITION " + partition);
+        }
+    }
+    
+    private void partitionByMonth(Statement stmt, int monthsAhead) throws SQLException {
+        System.out.println("Partitioning jobs table by month...");
+        
+        // Partitioned InnoDB tables cannot have foreign keys, and the partition column must be part of the primary key
+        List<String> foreignKeys = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery("SELECT CONSTRAINT_NAME FROM information_schema.TABLE_CONSTRAINTS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'jobs' AND CONSTRAINT_TYPE = 'FOREIGN KEY'")) {
+            while (rs.next()) {
+                foreignKeys.add(rs.getString(1));
+            }
+        }
+        for (String foreignKey : foreignKeys) {
+            stmt.executeUpdate("ALTER TABLE jobs DROP FOREIGN KEY " + foreignKey);
+        }
+        stmt.executeUpdate("UPDATE jobs SET createdAt = CURRENT_TIMESTAMP WHERE createdAt IS NULL");
+        stmt.executeUpdate("ALTER TABLE jobs MODIFY createdAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                "DROP PRIMARY KEY, ADD PRIMARY KEY (id, createdAt)");
+        
+        LocalDate first = LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1);
+        try (ResultSet rs = stmt.executeQuery("SELECT MIN(createdAt) FROM jobs")) {
+            if (rs.next() && rs.getTimestamp(1) != null) {
+                first = rs.getTimestamp(1).toInstant().atOffset(ZoneOffset.UTC).toLocalDate().withDayOfMonth(1);
+            }
+        }
+        LocalDate last = LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1).plusMonths(monthsAhead);
+        
+        StringBuilder definitions = new StringBuilder();
+        for (LocalDate month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            definitions.append(partitionDefinition(month)).append(", ");
+        }
+        stmt.executeUpdate("ALTER TABLE jobs PARTITION BY RANGE (UNIX_TIMESTAMP(createdAt)) (" +
+                definitions + "PARTITION pmax VALUES LESS THAN MAXVALUE)");
+        System.out.println("Partitioned jobs table from " + first + " to " + last);
+    }
+    
+    /**
+     * Splits the coming months out of pmax, which is empty in normal operation so the reorganize is cheap
+     */
+    private void addFuturePartitions(Statement stmt, int monthsAhead) throws SQLException {
+        List<JobPartition> partitions = listPartitions(stmt);
+        long highestBound = 0;
+        for (JobPartition partition : partitions) {
+            if (partition.upperBound != Long.MAX_VALUE) {
+                highestBound = Math.max(highestBound, partition.upperBound);
+            }
+        }
+        if (highestBound == 0) return;
+        
+        LocalDate next = LocalDate.ofEpochDay(highestBound / 1000 / 86400);
+        LocalDate last = LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1).plusMonths(monthsAhead);
+        if (next.isAfter(last)) return;
+        
+        StringBuilder definitions = new StringBuilder();
+        for (LocalDate month = next; !month.isAfter(last); month = month.plusMonths(1)) {
+            definitions.append(partitionDefinition(month)).append(", ");
+        }
+        stmt.executeUpdate("ALTER TABLE jobs REORGANIZE PARTITION pmax INTO (" +
+                definitions + "PARTITION pmax VALUES LESS THAN MAXVALUE)");
+    }
+    
+    private List<JobPartition> listPartitions(Statement stmt) throws SQLException {
+        List<JobPartition> partitions = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery("SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'jobs' AND PARTITION_NAME IS NOT NULL " +
+                "ORDER BY PARTITION_ORDINAL_POSITION")) {
+            while (rs.next()) {
+                String description = rs.getString("PARTITION_DESCRIPTION");
+                long upperBound = "MAXVALUE".equalsIgnoreCase(description) ? Long.MAX_VALUE : Long.parseLong(description) * 1000;
+                partitions.add(new JobPartition(rs.getString("PARTITION_NAME"), upperBound));
+            }
+        }
+        return partitions;
+    }
+    
+    private static String partitionDefinition(LocalDate month) {
+        long upperBound = month.plusMonths(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        return "PARTITION " + month.format(PARTITION_NAME) + " VALUES LESS THAN (" + upperBound + ")";
+    }
+    
+    private static void acquireLock(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT GET_LOCK('" + LOCK_NAME + "', 60)")) {
+            if (!rs.next() || rs.getInt(1) != 1) {
+                throw new SQLException("Could not acquire jobs partitioning lock");
+            }
+        }
+    }
+    
+    public static class JobPartition {
+        public final String name;
+        // Exclusive upper bound of createdAt in epoch millis; Long.MAX_VALUE for pmax
+        public final long upperBound;
+        
+        JobPartition(String name, long upperBound) {
+            this.name = name;
+            this.upperBound = upperBound;
+        }
+    }
+}
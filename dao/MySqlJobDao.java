@@ -0,0 +1,373 @@
+package dao;
+
+import models.Job;
+import enums.JobStatus;
+import config.DatabaseConfiguration;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public class MySqlJobDao implements JobDao {
+    
+    // Job columns plus the input/output bodies resolved from content_blobs (legacy rows keep them inline)
+    static final String JOB_SELECT =
+        "SELECT j.id, j.userId, j.isUrl, j.status, j.cacheKey, j.nearDuplicateOf, j.strategy, j.createdAt, j.updatedAt, " +
+        "j.inputContent, j.outputContent, ib.data AS inputData, ob.data AS outputData ";
+    static final String BLOB_JOINS =
+        "LEFT JOIN content_blobs ib ON ib.hash = j.inputHash " +
+        "LEFT JOIN content_blobs ob ON ob.hash = j.outputHash ";
+    private static final String JOB_COLUMNS = JOB_SELECT + "FROM jobs j " + BLOB_JOINS;
+    
+    private final ContentBlobDao contentBlobDao = new ContentBlobDao();
+    private final JobDeadLetterDao deadLetterDao = new JobDeadLetterDao();
+    
+    @Override
+    public void create(Job job) throws SQLException {
+        RecentJobWrites.getInstance().record(job.getId());
+        if (WriteBehindJournal.isEnabled()) {
+            WriteBehindJournal.getInstance().recordCreate(job);
+            return;
+        }
+        try (Connection conn = DatabaseConfiguration.getConnection()) {
+            insertJob(conn, job);
+        }
+    }
+    
+    @Override
+    public void submit(Job job, boolean enqueue) throws SQLException {
+        RecentJobWrites.getInstance().record(job.getId());
+        if (WriteBehindJournal.isEnabled()) {
+            // The journal flushes the job, the user append and the outbox entry in one transaction
+            WriteBehindJournal journal = WriteBehindJournal.getInstance();
+            journal.recordCreate(job);
+            journal.recordUserJobId(job.getUserId(), job.getId());
+            if (enqueue) {
+                journal.recordEnqueue(job.getId());
+            }
+            return;
+        }
+        try (Connection conn = DatabaseConfiguration.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                insertJob(conn, job);
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "UPDATE users SET jobIDs = CONCAT_WS(',', NULLIF(jobIDs, ''), ?) WHERE id = ?")) {
+                    stmt.setString(1, job.getId());
+                    stmt.setString(2, job.getUserId());
+                    stmt.executeUpdate();
+                }
+                if (enqueue) {
+                    try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO job_outbox (jobId) VALUES (?)")) {
+                        stmt.setString(1, job.getId());
+                        stmt.executeUpdate();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+    
+    @Override
+    public int drainOutbox(int limit, Consumer<List<String>> consumer) throws SQLException {
+        try (Connection conn = DatabaseConfiguration.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                // SKIP LOCKED lets relays on several nodes drain disjoint batches
+                List<Long> ids = new ArrayList<>();
+                List<String> jobIds = new ArrayList<>();
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT id, jobId FROM job_outbox ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED")) {
+                    stmt.setInt(1, limit);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getLong("id"));
+                            jobIds.add(rs.getString("jobId"));
+                        }
+                    }
+                }
+                if (ids.isEmpty()) {
+                    conn.commit();
+                    return 0;
+                }
+                
+                consumer.accept(jobIds);
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "DELETE FROM job_outbox WHERE id IN (" + String.join(",", Collections.nCopies(ids.size(), "?")) + ")")) {
+                    for (int i = 0; i < ids.size(); i++) {
+                        stmt.setLong(i + 1, ids.get(i));
+                    }
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+                return ids.size();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+    
+    @Override
+    public void updateStatus(String jobId, JobStatus status) throws SQLException {
+        RecentJobWrites.getInstance().record(jobId);
+        if (WriteBehindJournal.isEnabled()) {
+            WriteBehindJournal.getInstance().recordStatus(jobId, status);
+            return;
+        }
+        String sql = "UPDATE jobs SET status = ? WHERE id = ?";
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, status.name());
+            stmt.setString(2, jobId);
+            stmt.executeUpdate();
+        }
+    }
+    
+    @Override
+    public void updateOutput(String jobId, String outputContent) throws SQLException {
+        RecentJobWrites.getInstance().record(jobId);
+        if (WriteBehindJournal.isEnabled()) {
+            WriteBehindJournal.getInstance().recordOutput(jobId, outputContent);
+            return;
+        }
+        String sql = "UPDATE jobs SET outputHash = ?, outputContent = NULL WHERE id = ?";
+        try (Connection conn = DatabaseConfiguration.getConnection()) {
+            // One transaction: the blob stays locked until the job references it, so the orphan sweep cannot delete it in between
+            conn.setAutoCommit(false);
+            try {
+                String outputHash = contentBlobDao.store(conn, outputContent);
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setString(1, outputHash);
+                    stmt.setString(2, jobId);
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+    
+    @Override
+    public void updateNearDuplicateOf(String jobId, String sourceCacheKey) throws SQLException {
+        RecentJobWrites.getInstance().record(jobId);
+        if (WriteBehindJournal.isEnabled()) {
+            WriteBehindJournal.getInstance().recordNearDuplicateOf(jobId, sourceCacheKey);
+            return;
+        }
+        String sql = "UPDATE jobs SET nearDuplicateOf = ? WHERE id = ?";
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, sourceCacheKey);
+            stmt.setString(2, jobId);
+            stmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * Always read from the primary: the worker decides from this whether a job still needs processing,
+     * and a lagging replica could show it QUEUED after it was already summarized
+     */
+    @Override
+    public Job findById(String jobId) throws SQLException {
+        String sql = JOB_COLUMNS + "WHERE j.id = ?";
+        return withJournal(jobId, queryById(DatabaseConfiguration.getConnection(), sql, jobId, MySqlJobDao::mapResultSetToJob));
+    }
+    
+    /**
+     * Status projection: id, status and timestamps only, without the content columns
+     */
+    @Override
+    public Job findStatusById(String jobId) throws SQLException {
+        String sql = "SELECT id, status, createdAt, updatedAt FROM jobs WHERE id = ?";
+        return withJournal(jobId, readById(sql, jobId, rs -> {
+            Job job = new Job(rs.getString("id"), null, null, false, null, JobStatus.valueOf(rs.getString("status")));
+            job.setCreatedAt(rs.getTimestamp("createdAt"));
+            job.setUpdatedAt(rs.getTimestamp("updatedAt"));
+            return job;
+        }));
+    }
+    
+    /**
+     * Result projection: everything the result response needs, including timestamps, in one query
+     */
+    @Override
+    public Job findResultById(String jobId) throws SQLException {
+        return withJournal(jobId, readById(JOB_COLUMNS + "WHERE j.id = ?", jobId, MySqlJobDao::mapResultSetToJob));
+    }
+    
+    @Override
+    public Job findNextQueuedJob() throws SQLException {
+        String sql = JOB_COLUMNS + "WHERE j.status = 'QUEUED' ORDER BY j.createdAt ASC LIMIT 1";
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (rs.next()) {
+                return mapResultSetToJob(rs);
+            }
+            return null;
+        }
+    }
+    
+    @Override
+    public List<Job> findExpired(JobStatus status, Timestamp cutoff, Timestamp afterCreatedAt, String afterId,
+                                 int limit, boolean withContent) throws SQLException {
+        // Range scan on idx_jobs_status_created, whose entries are ordered by (status, createdAt, id)
+        String sql = (withContent ? JOB_COLUMNS : "SELECT j.id, j.userId, j.status, j.createdAt, j.updatedAt FROM jobs j ") +
+                "WHERE j.status = ? AND j.createdAt < ? " +
+                (afterCreatedAt != null ? "AND (j.createdAt > ? OR (j.createdAt = ? AND j.id > ?)) " : "") +
+                "ORDER BY j.createdAt, j.id LIMIT ?";
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            stmt.setString(index++, status.name());
+            stmt.setTimestamp(index++, cutoff);
+            if (afterCreatedAt != null) {
+                stmt.setTimestamp(index++, afterCreatedAt);
+                stmt.setTimestamp(index++, afterCreatedAt);
+                stmt.setString(index++, afterId);
+            }
+            stmt.setInt(index, limit);
+            
+            List<Job> jobs = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    jobs.add(withContent ? mapResultSetToJob(rs) : mapResultSetToJobKey(rs));
+                }
+            }
+            return jobs;
+        }
+    }
+    
+    @Override
+    public int deleteByIds(List<String> jobIds) throws SQLException {
+        if (jobIds.isEmpty()) return 0;
+        String placeholders = String.join(",", Collections.nCopies(jobIds.size(), "?"));
+        try (Connection conn = DatabaseConfiguration.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Set<String> hashes = new HashSet<>();
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT inputHash, outputHash FROM jobs WHERE id IN (" + placeholders + ")")) {
+                    for (int i = 0; i < jobIds.size(); i++) {
+                        stmt.setString(i + 1, jobIds.get(i));
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            if (rs.getString("inputHash") != null) hashes.add(rs.getString("inputHash"));
+                            if (rs.getString("outputHash") != null) hashes.add(rs.getString("outputHash"));
+                        }
+                    }
+                }
+                
+                int deleted;
+                try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM jobs WHERE id IN (" + placeholders + ")")) {
+                    for (int i = 0; i < jobIds.size(); i++) {
+                        stmt.setString(i + 1, jobIds.get(i));
+                    }
+                    deleted = stmt.executeUpdate();
+                }
+                contentBlobDao.deleteUnreferenced(conn, hashes);
+                conn.commit();
+                return deleted;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+    
+    private void insertJob(Connection conn, Job job) throws SQLException {
+        String sql = "INSERT INTO jobs (id, userId, inputHash, isUrl, outputHash, status, cacheKey, strategy) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        String inputHash = contentBlobDao.store(conn, job.getInputContent());
+        String outputHash = contentBlobDao.store(conn, job.getOutputContent());
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, job.getId());
+            stmt.setString(2, job.getUserId());
+            stmt.setString(3, inputHash);
+            stmt.setBoolean(4, job.isUrl());
+            stmt.setString(5, outputHash);
+            stmt.setString(6, job.getStatus().name());
+            stmt.setString(7, job.getCacheKey());
+            stmt.setString(8, job.getStrategy());
+            stmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * Reads one job for an API response from the read replica, falling back to the primary when this node wrote the job
+     * recently (read-your-writes) or the replica does not have it yet
+     */
+    private Job readById(String sql, String jobId, JobMapper mapper) throws SQLException {
+        if (DatabaseConfiguration.hasReplica() && !RecentJobWrites.getInstance().contains(jobId)) {
+            Job job = queryById(DatabaseConfiguration.getReadConnection(), sql, jobId, mapper);
+            if (job != null) {
+                return job;
+            }
+        }
+        return queryById(DatabaseConfiguration.getConnection(), sql, jobId, mapper);
+    }
+    
+    private Job queryById(Connection connection, String sql, String jobId, JobMapper mapper) throws SQLException {
+        try (Connection conn = connection;
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, jobId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? mapper.map(rs) : null;
+            }
+        }
+    }
+    
+    /**
+     * Overlays writes still waiting in the write-behind journal (read-your-writes)
+     */
+    private Job withJournal(String jobId, Job stored) throws SQLException {
+        if (!WriteBehindJournal.isEnabled()) {
+            return stored;
+        }
+        Job job = WriteBehindJournal.getInstance().overlay(jobId, stored);
+        // A create the journal could never write reads as FAILED
+        return job != null ? job : deadLetterDao.find(jobId);
+    }
+    
+    static Job mapResultSetToJob(ResultSet rs) throws SQLException {
+        String inputContent = ContentBlobDao.decode(rs.getBytes("inputData"));
+        String outputContent = ContentBlobDao.decode(rs.getBytes("outputData"));
+        Job job = new Job(
+            rs.getString("id"),
+            rs.getString("userId"),
+            inputContent != null ? inputContent : rs.getString("inputContent"),
+            rs.getBoolean("isUrl"),
+            outputContent != null ? outputContent : rs.getString("outputContent"),
+            JobStatus.valueOf(rs.getString("status"))
+        );
+        job.setCacheKey(rs.getString("cacheKey"));
+        job.setNearDuplicateOf(rs.getString("nearDuplicateOf"));
+        job.setStrategy(rs.getString("strategy"));
+        job.setCreatedAt(rs.getTimestamp("createdAt"));
+        job.setUpdatedAt(rs.getTimestamp("updatedAt"));
+        return job;
+    }
+    
+    /**
+     * Identifying columns only: id, userId, status and timestamps
+     */
+    static Job mapResultSetToJobKey(ResultSet rs) throws SQLException {
+        Job job = new Job(rs.getString("id"), rs.getString("userId"), null, false, null, JobStatus.valueOf(rs.getString("status")));
+        job.setCreatedAt(rs.getTimestamp("createdAt"));
+        job.setUpdatedAt(rs.getTimestamp("updatedAt"));
+        return job;
+    }
+    
+    private interface JobMapper {
+        Job map(ResultSet rs) throws SQLException;
+    }
+}
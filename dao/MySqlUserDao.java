@@ -0,0 +1,130 @@
+package dao;
+
+import models.User;
+import enums.UserType;
+import config.DatabaseConfiguration;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class MySqlUserDao implements UserDao {
+    
+    @Override
+    public void create(User user) throws SQLException {
+        String sql = "INSERT INTO users (id, name, jobIDs, userType) VALUES (?, ?, ?, ?)";
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, user.getId());
+            stmt.setString(2, user.getName());
+            stmt.setString(3, String.join(",", user.getJobIDs() != null ? user.getJobIDs() : new ArrayList<>()));
+            stmt.setString(4, user.getUserType().name());
+            stmt.executeUpdate();
+        }
+    }
+    
+    @Override
+    public User findById(String userId) throws SQLException {
+        String sql = "SELECT * FROM users WHERE id = ?";
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, userId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                User user = mapResultSetToUser(rs);
+                if (WriteBehindJournal.isEnabled()) {
+                    // Job IDs still waiting in the write-behind journal
+                    for (String jobId : WriteBehindJournal.getInstance().pendingJobIds(userId)) {
+                        user.addJobID(jobId);
+                    }
+                }
+                return user;
+            }
+            return null;
+        }
+    }
+    
+    @Override
+    public boolean exists(String userId) throws SQLException {
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM users WHERE id = ?")) {
+            stmt.setString(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+    
+    @Override
+    public void addJobId(String userId, String jobId) throws SQLException {
+        if (WriteBehindJournal.isEnabled()) {
+            WriteBehindJournal.getInstance().recordUserJobId(userId, jobId);
+            return;
+        }
+        User user = findById(userId);
+        if (user != null) {
+            user.addJobID(jobId);
+            String sql = "UPDATE users SET jobIDs = ? WHERE id = ?";
+            try (Connection conn = DatabaseConfiguration.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, String.join(",", user.getJobIDs()));
+                stmt.setString(2, userId);
+                stmt.executeUpdate();
+            }
+        }
+    }
+    
+    @Override
+    public void removeJobIds(Map<String, Set<String>> jobIdsByUser) throws SQLException {
+        if (jobIdsByUser.isEmpty()) return;
+        List<String> userIds = new ArrayList<>(jobIdsByUser.keySet());
+        String sql = "SELECT * FROM users WHERE id IN (" + String.join(",", Collections.nCopies(userIds.size(), "?")) + ") FOR UPDATE";
+        try (Connection conn = DatabaseConfiguration.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement select = conn.prepareStatement(sql);
+                 PreparedStatement update = conn.prepareStatement("UPDATE users SET jobIDs = ? WHERE id = ?")) {
+                for (int i = 0; i < userIds.size(); i++) {
+                    select.setString(i + 1, userIds.get(i));
+                }
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        User user = mapResultSetToUser(rs);
+                        List<String> remaining = new ArrayList<>(user.getJobIDs());
+                        if (remaining.removeAll(jobIdsByUser.get(user.getId()))) {
+                            update.setString(1, String.join(",", remaining));
+                            update.setString(2, user.getId());
+                            update.addBatch();
+                        }
+                    }
+                }
+                update.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+    
+    private User mapResultSetToUser(ResultSet rs) throws SQLException {
+        String jobIDsStr = rs.getString("jobIDs");
+        List<String> jobIDs = new ArrayList<>();
+        if (jobIDsStr != null && !jobIDsStr.isEmpty()) {
+            String[] ids = jobIDsStr.split(",");
+            for (String id : ids) {
+                if (!id.trim().isEmpty()) {
+                    jobIDs.add(id.trim());
+                }
+            }
+        }
+        return new User(
+            rs.getString("id"),
+            rs.getString("name"),
+            jobIDs,
+            UserType.valueOf(rs.getString("userType"))
+        );
+    }
+}
+
@@ -0,0 +1,51 @@
+package dao;
+
+import config.DatabaseConfiguration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Jobs this node wrote within the last DB_REPLICA_READ_YOUR_WRITES_MS. Reads of those jobs go to the
+ * primary, so a client never sees its own submit or a just-completed result go backwards on a lagging replica.
+ * Only tracked when a read replica is configured.
+ */
+public class RecentJobWrites {
+    private static final int CLEANUP_THRESHOLD = 10000;
+    private static RecentJobWrites instance;
+    
+    private final boolean enabled;
+    private final long windowMs;
+    private final Map<String, Long> writtenAt = new ConcurrentHashMap<>();
+    private volatile long nextCleanupAt;
+    
+    private RecentJobWrites() {
+        enabled = DatabaseConfiguration.hasReplica();
+        windowMs = Math.max(0, DatabaseConfiguration.getIntEnv("DB_REPLICA_READ_YOUR_WRITES_MS", 5000));
+    }
+    
+    public static RecentJobWrites getInstance() {
+        if (instance == null) {
+            synchronized (RecentJobWrites.class) {
+                if (instance == null) {
+                    instance = new RecentJobWrites();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    public void record(String jobId) {
+        if (!enabled) return;
+        long now = System.currentTimeMillis();
+        writtenAt.put(jobId, now);
+        if (writtenAt.size() > CLEANUP_THRESHOLD && now >= nextCleanupAt) {
+            nextCleanupAt = now + windowMs;
+            writtenAt.values().removeIf(at -> now - at > windowMs);
+        }
+    }
+    
+    public boolean contains(String jobId) {
+        Long at = writtenAt.get(jobId);
+        return at != null && System.currentTimeMillis() - at <= windowMs;
+    }
+}
@@ -0,0 +1,62 @@
+package dao;
+
+import config.DatabaseConfiguration;
+import java.sql.*;
+import java.util.Map;
+
+public class SummaryCacheDao {
+    
+    /**
+     * Returns the summary and how long ago it was last written, measured by the database clock
+     */
+    public CachedSummary find(String cacheKey) throws SQLException {
+        String sql = "SELECT summary, TIMESTAMPDIFF(SECOND, updatedAt, NOW()) AS ageSeconds " +
+                     "FROM summary_cache WHERE cacheKey = ?";
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, cacheKey);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return new CachedSummary(rs.getString("summary"), Math.max(0, rs.getLong("ageSeconds")) * 1000);
+                }
+                return null;
+            }
+        }
+    }
+    
+    /**
+     * Writes all entries in one JDBC batch; existing keys are overwritten with the newer summary
+     */
+    public void saveAll(Map<String, String> summaries) throws SQLException {
+        if (summaries.isEmpty()) return;
+        String sql = "INSERT INTO summary_cache (cacheKey, summary) VALUES (?, ?) " +
+                     "ON DUPLICATE KEY UPDATE summary = VALUES(summary), updatedAt = CURRENT_TIMESTAMP";
+        try (Connection conn = DatabaseConfiguration.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (Map.Entry<String, String> entry : summaries.entrySet()) {
+                stmt.setString(1, entry.getKey());
+                stmt.setString(2, entry.getValue());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+    
+    public static class CachedSummary {
+        private final String summary;
+        private final long ageMs;
+        
+        public CachedSummary(String summary, long ageMs) {
+            this.summary = summary;
+            this.ageMs = ageMs;
+        }
+        
+        public String getSummary() {
+            return summary;
+        }
+        
+        public long getAgeMs() {
+            return ageMs;
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package dao;
+
+import models.Job;
+import enums.JobStatus;
+import config.DatabaseConfiguration;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optional write-behind mode for job and user writes (DB_WRITE_BEHIND=true).
+ * Writes are recorded in an in-memory journal, coalesced per job (a create absorbs later
+ * updates, and only the last status wins) and flushed in one transaction of JDBC batches
+ * when DB_WRITE_BEHIND_BATCH_SIZE jobs are pending or every DB_WRITE_BEHIND_FLUSH_MS.
+ * DAO reads overlay the journal, so callers always see their own writes.
+ * At most DB_WRITE_BEHIND_MAX_PENDING jobs are journaled; a create beyond that waits up to
+ * DB_WRITE_BEHIND_FULL_WAIT_MS for a flush to make room and is then rejected.
+ */
+public class WriteBehindJournal {
+    private static final boolean ENABLED = DatabaseConfiguration.getBooleanEnv("DB_WRITE_BEHIND", false);
+    private static WriteBehindJournal instance;
+    
+    private final ContentBlobDao contentBlobDao = new ContentBlobDao();
+    private final JobDeadLetterDao deadLetterDao = new JobDeadLetterDao();
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final int maxPending;
+    private final long fullWaitMs;
+    private final Object flushLock = new Object();
+    private final Thread thread;
+    private volatile boolean running = true;
+    // Set while the database rejects flushes, so a full batch is retried every interval rather than in a tight loop
+    private volatile boolean flushFailing;
+    
+    // Entries being written stay readable until the flush commits
+    private Map<String, PendingJob> pendingJobs = new LinkedHashMap<>();
+    private Map<String, List<String>> pendingUserJobIds = new LinkedHashMap<>();
+    private Map<String, PendingJob> flushingJobs = Collections.emptyMap();
+    private Map<String, List<String>> flushingUserJobIds = Collections.emptyMap();
+    
+    private WriteBehindJournal() {
+        batchSize = Math.max(1, DatabaseConfiguration.getIntEnv("DB_WRITE_BEHIND_BATCH_SIZE", 200));
+        flushIntervalMs = Math.max(5, DatabaseConfiguration.getIntEnv("DB_WRITE_BEHIND_FLUSH_MS", 50));
+        maxPending = Math.max(batchSize, DatabaseConfiguration.getIntEnv("DB_WRITE_BEHIND_MAX_PENDING", 10000));
+        fullWaitMs = Math.max(0, DatabaseConfiguration.getIntEnv("DB_WRITE_BEHIND_FULL_WAIT_MS", 1000));
+        thread = new Thread(this::run, "write-behind-journal");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+    
+    public static WriteBehindJournal getInstance() {
+        if (instance == null) {
+            synchronized (WriteBehindJournal.class) {
+                if (instance == null) {
+                    instance = new WriteBehindJournal();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Journals a new job; only creates are held back when the journal is full, so jobs already
+     * accepted can always record their progress
+     */
+    public synchronized void recordCreate(Job job) throws SQLException {
+        long deadline = System.currentTimeMillis() + fullWaitMs;
+        boolean flushRequested = false;
+        while (pendingJobs.size() + flushingJobs.size() >= maxPending) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new SQLException("Write-behind journal is full (" + maxPending + " jobs pending), try again later");
+            }
+            if (!flushRequested) {
+                notifyAll();
+                flushRequested = true;
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for room in the write-behind journal", e);
+            }
+        }
+        Job created = copyOf(job);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        created.setCreatedAt(now);
+        created.setUpdatedAt(now);
+        pending(job.getId()).created = created;
+        signalIfFull();
+    }
+    
+    public synchronized void recordStatus(String jobId, JobStatus status) {
+        PendingJob pending = pending(jobId);
+        pending.status = status;
+        pending.updatedAt = new Timestamp(System.currentTimeMillis());
+        signalIfFull();
+    }
+    
+    public synchronized void recordOutput(String jobId, String outputContent) {
+        PendingJob pending = pending(jobId);
+        pending.output = outputContent;
+        pending.hasOutput = true;
+        signalIfFull();
+    }
+    
+    public synchronized void recordNearDuplicateOf(String jobId, String sourceCacheKey) {
+        pending(jobId).nearDuplicateOf = sourceCacheKey;
+        signalIfFull();
+    }
+    
+    public synchronized void recordEnqueue(String jobId) {
+        pending(jobId).enqueue = true;
+    }
+    
+    public synchronized void recordUserJobId(String userId, String jobId) {
+        pendingUserJobIds.computeIfAbsent(userId, k -> new ArrayList<>()).add(jobId);
+    }
+    
+    /**
+     * Applies journaled writes for the job on top of what was read from the database
+     */
+    public synchronized Job overlay(String jobId, Job stored) {
+        PendingJob flushing = flushingJobs.get(jobId);
+        PendingJob pending = pendingJobs.get(jobId);
+        if (flushing == null && pending == null) {
+            return stored;
+        }
+        
+        Job job = stored;
+        if (job == null) {
+            Job created = pending != null && pending.created != null ? pending.created
+                    : flushing != null ? flushing.created : null;
+            if (created == null) {
+                return null;
+            }
+            job = copyOf(created);
+        }
+        if (flushing != null) flushing.applyTo(job);
+        if (pending != null) pending.applyTo(job);
+        return job;
+    }
+    
+    public synchronized List<String> pendingJobIds(String userId) {
+        List<String> ids = new ArrayList<>();
+        ids.addAll(flushingUserJobIds.getOrDefault(userId, Collections.emptyList()));
+        ids.addAll(pendingUserJobIds.getOrDefault(userId, Collections.emptyList()));
+        return ids;
+    }
+    
+    /**
+     * Writes everything journaled so far; if the batch fails, entries are retried one by one and only the ones that may still succeed are kept for the next attempt
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, PendingJob> jobs;
+            Map<String, List<String>> userJobIds;
+            synchronized (this) {
+                if (pendingJobs.isEmpty() && pendingUserJobIds.isEmpty()) return;
+                jobs = pendingJobs;
+                userJobIds = pendingUserJobIds;
+                flushingJobs = jobs;
+                flushingUserJobIds = userJobIds;
+                pendingJobs = new LinkedHashMap<>();
+                pendingUserJobIds = new LinkedHashMap<>();
+            }
+            
+            try {
+                write(jobs, userJobIds);
+                synchronized (this) {
+                    flushingJobs = Collections.emptyMap();
+                    flushingUserJobIds = Collections.emptyMap();
+                    flushFailing = false;
+                    // Wake creates waiting for room
+                    notifyAll();
+                }
+            } catch (SQLException e) {
+                System.err.println("Error flushing write-behind journal, retrying entries one by one: " + e.getMessage());
+                Map<String, PendingJob> failedJobs = new LinkedHashMap<>();
+                Map<String, List<String>> failedUserJobIds = new LinkedHashMap<>();
+                writeIndividually(jobs, userJobIds, failedJobs, failedUserJobIds);
+                synchronized (this) {
+                    requeue(failedJobs, failedUserJobIds);
+                    flushingJobs = Collections.emptyMap();
+                    flushingUserJobIds = Collections.emptyMap();
+                    flushFailing = !failedJobs.isEmpty() || !failedUserJobIds.isEmpty();
+                    notifyAll();
+                }
+            }
+        }
+    }
+    
+    public void stop() {
+        running = false;
+        synchronized (this) {
+            notifyAll();
+        }
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+    
+    private void run() {
+        while (running) {
+            try {
+                synchronized (this) {
+                    if (pendingJobs.size() < batchSize || flushFailing) {
+                        wait(flushIntervalMs);
+                    }
+                }
+                flush();
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+    
+    private void write(Map<String, PendingJob> jobs, Map<String, List<String>> userJobIds) throws SQLException {
+        try (Connection conn = DatabaseConfiguration.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement insertJob = conn.prepareStatement(
+                     "INSERT INTO jobs (id, userId, inputHash, isUrl, outputHash, status, cacheKey, nearDuplicateOf, strategy, createdAt, updatedAt) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                 PreparedStatement updateStatus = conn.prepareStatement(
+                     "UPDATE jobs SET status = ?, updatedAt = ? WHERE id = ?");
+                 PreparedStatement updateOutput = conn.prepareStatement(
+                     "UPDATE jobs SET outputHash = ?, outputContent = NULL WHERE id = ?");
+                 PreparedStatement updateNearDuplicate = conn.prepareStatement(
+                     "UPDATE jobs SET nearDuplicateOf = ? WHERE id = ?");
+                 PreparedStatement appendJobIds = conn.prepareStatement(
+                     "UPDATE users SET jobIDs = CONCAT_WS(',', NULLIF(jobIDs, ''), ?) WHERE id = ?");
+                 PreparedStatement insertOutbox = conn.prepareStatement(
+                     "INSERT INTO job_outbox (jobId) VALUES (?)")) {
+                
+                Map<String, String> blobs = new LinkedHashMap<>();
+                for (Map.Entry<String, PendingJob> entry : jobs.entrySet()) {
+                    String jobId = entry.getKey();
+                    PendingJob pending = entry.getValue();
+                    
+                    if (pending.enqueue) {
+                        insertOutbox.setString(1, jobId);
+                        insertOutbox.addBatch();
+                    }
+                    if (pending.created != null) {
+                        // Create coalesced with every later update into a single insert
+                        Job job = copyOf(pending.created);
+                        pending.applyTo(job);
+                        insertJob.setString(1, jobId);
+                        insertJob.setString(2, job.getUserId());
+                        insertJob.setString(3, addBlob(blobs, job.getInputContent()));
+                        insertJob.setBoolean(4, job.isUrl());
+                        insertJob.setString(5, addBlob(blobs, job.getOutputContent()));
+                        insertJob.setString(6, job.getStatus().name());
+                        insertJob.setString(7, job.getCacheKey());
+                        insertJob.setString(8, job.getNearDuplicateOf());
+                        insertJob.setString(9, job.getStrategy());
+                        insertJob.setTimestamp(10, job.getCreatedAt());
+                        insertJob.setTimestamp(11, job.getUpdatedAt());
+                        insertJob.addBatch();
+                        continue;
+                    }
+                    
+                    if (pending.status != null) {
+                        updateStatus.setString(1, pending.status.name());
+                        updateStatus.setTimestamp(2, pending.updatedAt);
+                        updateStatus.setString(3, jobId);
+                        updateStatus.addBatch();
+                    }
+                    if (pending.hasOutput) {
+                        updateOutput.setString(1, addBlob(blobs, pending.output));
+                        updateOutput.setString(2, jobId);
+                        updateOutput.addBatch();
+                    }
+                    if (pending.nearDuplicateOf != null) {
+                        updateNearDuplicate.setString(1, pending.nearDuplicateOf);
+                        updateNearDuplicate.setString(2, jobId);
+                        updateNearDuplicate.addBatch();
+                    }
+                }
+                
+                for (Map.Entry<String, List<String>> entry : userJobIds.entrySet()) {
+                    appendJobIds.setString(1, String.join(",", entry.getValue()));
+                    appendJobIds.setString(2, entry.getKey());
+                    appendJobIds.addBatch();
+                }
+                
+                contentBlobDao.storeAll(conn, blobs);
+                insertJob.executeBatch();
+                updateStatus.executeBatch();
+                updateOutput.executeBatch();
+                updateNearDuplicate.executeBatch();
+                appendJobIds.executeBatch();
+                insertOutbox.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+    
+    /**
+     * Writes each entry of a failed batch in its own transaction, so one bad entry cannot hold back the rest.
+     * Entries that can never be written (integrity violations, e.g. an unknown user) are dropped, a create
+     * leaving a dead letter so the job reads as FAILED; after any other error the entry and everything not
+     * yet tried go into the failed maps to be requeued.
+     */
+    private void writeIndividually(Map<String, PendingJob> jobs, Map<String, List<String>> userJobIds,
+                                   Map<String, PendingJob> failedJobs, Map<String, List<String>> failedUserJobIds) {
+        boolean unavailable = false;
+        for (Map.Entry<String, PendingJob> entry : jobs.entrySet()) {
+            if (unavailable) {
+                failedJobs.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+            try {
+                write(Collections.singletonMap(entry.getKey(), entry.getValue()), Collections.emptyMap());
+            } catch (SQLException e) {
+                if (isPermanent(e)) {
+                    System.err.println("Dropping journaled writes for job " + entry.getKey() + ": " + e.getMessage());
+                    if (!deadLetter(entry.getKey(), entry.getValue(), e)) {
+                        unavailable = true;
+                        failedJobs.put(entry.getKey(), entry.getValue());
+                    }
+                } else {
+                    unavailable = true;
+                    failedJobs.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : userJobIds.entrySet()) {
+            if (unavailable) {
+                failedUserJobIds.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+            try {
+                write(Collections.emptyMap(), Collections.singletonMap(entry.getKey(), entry.getValue()));
+            } catch (SQLException e) {
+                if (isPermanent(e)) {
+                    System.err.println("Dropping journaled job IDs for user " + entry.getKey() + ": " + e.getMessage());
+                } else {
+                    unavailable = true;
+                    failedUserJobIds.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Records a create that can never be written; false if that failed too, so the entry is kept
+     */
+    private boolean deadLetter(String jobId, PendingJob pending, SQLException cause) {
+        if (pending.created == null) {
+            return true;
+        }
+        try {
+            deadLetterDao.save(jobId, pending.created.getUserId(), cause.getMessage());
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error recording dead letter for job " + jobId + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private static boolean isPermanent(SQLException e) {
+        // SQLSTATE class 23: integrity constraint violation, retrying the same row fails the same way
+        return e instanceof SQLIntegrityConstraintViolationException
+                || (e.getSQLState() != null && e.getSQLState().startsWith("23"));
+    }
+    
+    private String addBlob(Map<String, String> blobs, String content) {
+        if (content == null) return null;
+        String hash = ContentBlobDao.hash(content);
+        blobs.putIfAbsent(hash, content);
+        return hash;
+    }
+    
+    /**
+     * Puts a failed batch back in front of anything journaled since, newer writes winning
+     */
+    private void requeue(Map<String, PendingJob> jobs, Map<String, List<String>> userJobIds) {
+        for (Map.Entry<String, PendingJob> entry : pendingJobs.entrySet()) {
+            PendingJob older = jobs.get(entry.getKey());
+            if (older == null) {
+                jobs.put(entry.getKey(), entry.getValue());
+            } else {
+                older.mergeNewer(entry.getValue());
+            }
+        }
+        pendingJobs = jobs;
+        
+        for (Map.Entry<String, List<String>> entry : pendingUserJobIds.entrySet()) {
+            userJobIds.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).addAll(entry.getValue());
+        }
+        pendingUserJobIds = userJobIds;
+    }
+    
+    private PendingJob pending(String jobId) {
+        return pendingJobs.computeIfAbsent(jobId, k -> new PendingJob());
+    }
+    
+    private void signalIfFull() {
+        if (pendingJobs.size() >= batchSize) {
+            notifyAll();
+        }
+    }
+    
+    private static Job copyOf(Job job) {
+        Job copy = new Job(job.getId(), job.getUserId(), job.getInputContent(), job.isUrl(),
+                job.getOutputContent(), job.getStatus());
+        copy.setCacheKey(job.getCacheKey());
+        copy.setNearDuplicateOf(job.getNearDuplicateOf());
+        copy.setStrategy(job.getStrategy());
+        copy.setCreatedAt(job.getCreatedAt());
+        copy.setUpdatedAt(job.getUpdatedAt());
+        return copy;
+    }
+    
+    private static class PendingJob {
+        Job created;
+        JobStatus status;
+        Timestamp updatedAt;
+        String output;
+        boolean hasOutput;
+        String nearDuplicateOf;
+        boolean enqueue;
+        
+        void applyTo(Job job) {
+            if (status != null) {
+                job.setStatus(status);
+                job.setUpdatedAt(updatedAt);
+            }
+            if (hasOutput) {
+                job.setOutputContent(output);
+            }
+            if (nearDuplicateOf != null) {
+                job.setNearDuplicateOf(nearDuplicateOf);
+            }
+        }
+        
+        void mergeNewer(PendingJob newer) {
+            if (newer.created != null) created = newer.created;
+            if (newer.status != null) {
+                status = newer.status;
+                updatedAt = newer.updatedAt;
+            }
+            if (newer.hasOutput) {
+                output = newer.output;
+                hasOutput = true;
+            }
+            if (newer.nearDuplicateOf != null) nearDuplicateOf = newer.nearDuplicateOf;
+            enqueue |= newer.enqueue;
+        }
+    }
+}
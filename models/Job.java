@@ -1,6 +1,7 @@
 package models;
 
 import enums.JobStatus;
+import java.sql.Timestamp;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -13,6 +14,11 @@ public class Job {
     private boolean isUrl; 
     private String outputContent;
     private JobStatus status;
+    private String cacheKey;
+    private String nearDuplicateOf;
+    private String strategy;
+    private Timestamp createdAt;
+    private Timestamp updatedAt;
 
     public Job(String id, String userId, String inputContent, boolean isUrl, String outputContent, JobStatus status) {
         this.id = id;
@@ -32,6 +38,11 @@ public class Job {
                 ", isUrl=" + isUrl +
                 ", outputContent='" + outputContent + '\'' +
                 ", status=" + status +
+                ", cacheKey='" + cacheKey + '\'' +
+                ", nearDuplicateOf='" + nearDuplicateOf + '\'' +
+                ", strategy='" + strategy + '\'' +
+                ", createdAt=" + createdAt +
+                ", updatedAt=" + updatedAt +
                 '}';
     }
 }
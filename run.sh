@@ -24,8 +24,17 @@ if [ -z "$DRIVER_JAR" ]; then
     fi
 fi
 
+# The embedded storage backend runs without MySQL
+STORAGE_BACKEND_SETTING="$STORAGE_BACKEND"
+if [ -z "$STORAGE_BACKEND_SETTING" ] && [ -f ".env" ]; then
+    STORAGE_BACKEND_SETTING=$(grep -E '^STORAGE_BACKEND=' .env | tail -1 | cut -d= -f2 | tr -d '"'"'"' ')
+fi
+
 # Check if driver exists
-if [ -z "$DRIVER_JAR" ] || [ ! -f "$DRIVER_JAR" ]; then
+if [ "$STORAGE_BACKEND_SETTING" = "embedded" ] && { [ -z "$DRIVER_JAR" ] || [ ! -f "$DRIVER_JAR" ]; }; then
+    echo "Using embedded storage backend (no MySQL driver needed)"
+    DRIVER_JAR=""
+elif [ -z "$DRIVER_JAR" ] || [ ! -f "$DRIVER_JAR" ]; then
     echo "❌ MySQL JDBC Driver not found!"
     echo ""
     echo "Tried to find driver in:"
@@ -39,7 +48,9 @@ if [ -z "$DRIVER_JAR" ] || [ ! -f "$DRIVER_JAR" ]; then
     exit 1
 fi
 
-echo "Using MySQL driver: $DRIVER_JAR"
+if [ -n "$DRIVER_JAR" ]; then
+    echo "Using MySQL driver: $DRIVER_JAR"
+fi
 
 # Find Lombok
 LOMBOK_JAR=""
@@ -4,24 +4,27 @@ import models.Job;
 import models.User;
 import enums.JobStatus;
 import enums.UserType;
+import strategy.StrategyRegistry;
 import strategy.SummaryStrategy;
+import dao.DaoFactory;
 import dao.JobDao;
 import dao.UserDao;
-import worker.QueueService;
+import worker.OutboxRelay;
+import worker.PartialSummaryBuffer;
 import worker.RedisCache;
 import util.CacheKeyGenerator;
 import util.JsonUtils;
 import util.TimeUtils;
 import java.util.UUID;
 import java.util.ArrayList;
-import java.sql.Timestamp;
 
 public abstract class ContentSummarizerService {
     
-    protected JobDao jobDao = new JobDao();
-    protected UserDao userDao = new UserDao();
-    protected QueueService queueService = QueueService.getInstance();
+    protected JobDao jobDao = DaoFactory.getJobDao();
+    protected UserDao userDao = DaoFactory.getUserDao();
+    protected OutboxRelay outboxRelay = OutboxRelay.getInstance();
     protected RedisCache redisCache = RedisCache.getInstance();
+    protected PartialSummaryBuffer partialSummaries = PartialSummaryBuffer.getInstance();
     
     protected abstract SummaryStrategy getStrategy();
     
@@ -38,8 +41,20 @@ public abstract class ContentSummarizerService {
     }
     
     public String submit(String userId, String text, boolean isUrl) throws Exception {
-        String cacheKey = CacheKeyGenerator.generate(text, isUrl);
-        String cachedSummary = redisCache.get(cacheKey);
+        return submit(userId, text, isUrl, null);
+    }
+    
+    /**
+     * Submits a job for the named strategy (null for the default); each strategy's summaries are cached separately
+     */
+    public String submit(String userId, String text, boolean isUrl, String strategyName) throws Exception {
+        // Checked up front: with write-behind the job is only inserted later, where a missing user fails its foreign key
+        if (!userDao.exists(userId)) {
+            throw new Exception("User not found: " + userId);
+        }
+        String strategy = StrategyRegistry.getInstance().jobStrategy(strategyName);
+        String cacheKey = CacheKeyGenerator.generate(text, isUrl, strategy);
+        String cachedSummary = redisCache.getSummary(cacheKey, redisCache.summaryTtlMs(isUrl));
         
         if (cachedSummary != null) {
             // Cache hit - create job with cached result and mark as completed
@@ -47,45 +62,30 @@ public abstract class ContentSummarizerService {
             cachedSummary = normalizeSummary(cachedSummary);
             String jobId = UUID.randomUUID().toString();
             Job job = new Job(jobId, userId, text, isUrl, cachedSummary, JobStatus.COMPLETED);
-            jobDao.create(job);
-            userDao.addJobId(userId, jobId);
-            return jobId;
-        }
-        
-        String processingJobId = redisCache.getProcessingJobId(cacheKey);
-        if (processingJobId != null) {
-            String jobId = UUID.randomUUID().toString();
-            Job job = new Job(jobId, userId, text, isUrl, null, JobStatus.QUEUED);
-            jobDao.create(job);
-            userDao.addJobId(userId, jobId);
-            queueService.enqueue(jobId);
+            job.setCacheKey(cacheKey);
+            job.setStrategy(strategy);
+            jobDao.submit(job, false);
             return jobId;
         }
         
         String jobId = UUID.randomUUID().toString();
-        if (redisCache.markAsProcessing(cacheKey, jobId)) {
-            Job job = new Job(jobId, userId, text, isUrl, null, JobStatus.QUEUED);
-            jobDao.create(job);
-            userDao.addJobId(userId, jobId);
-            queueService.enqueue(jobId);
-            return jobId;
-        } else {
-            Job job = new Job(jobId, userId, text, isUrl, null, JobStatus.QUEUED);
-            jobDao.create(job);
-            userDao.addJobId(userId, jobId);
-            queueService.enqueue(jobId);
-            return jobId;
-        }
+        // Only the first job for this content gets the marker; the worker lets later ones wait for its summary
+        redisCache.markAsProcessing(cacheKey, jobId);
+        Job job = new Job(jobId, userId, text, isUrl, null, JobStatus.QUEUED);
+        job.setCacheKey(cacheKey);
+        job.setStrategy(strategy);
+        jobDao.submit(job, true);
+        outboxRelay.wake();
+        return jobId;
     }
     
     public String getStatus(String jobId) throws Exception {
-        Job job = jobDao.findById(jobId);
+        Job job = jobDao.findStatusById(jobId);
         if (job == null) {
             throw new Exception("Job not found");
         }
         
-        Timestamp createdAt = jobDao.getCreatedAt(jobId);
-        String createdAtStr = TimeUtils.formatAsIso8601(createdAt);
+        String createdAtStr = TimeUtils.formatAsIso8601(job.getCreatedAt());
         
         StringBuilder json = new StringBuilder();
         json.append("{\n");
@@ -98,21 +98,39 @@ public abstract class ContentSummarizerService {
     }
     
     public String getResult(String jobId) throws Exception {
-        Job job = jobDao.findById(jobId);
+        return getResult(jobId, false);
+    }
+    
+    /**
+     * With partial=true, a queued or processing job returns the summary generated so far (empty until
+     * the model starts streaming) instead of an error
+     */
+    public String getResult(String jobId, boolean partial) throws Exception {
+        Job job = jobDao.findResultById(jobId);
         if (job == null) {
             throw new Exception("Job not found");
         }
         
+        if (partial && (job.getStatus() == JobStatus.QUEUED || job.getStatus() == JobStatus.PROCESSING)) {
+            String partialSummary = partialSummaries.get(jobId);
+            StringBuilder json = new StringBuilder();
+            json.append("{\n");
+            json.append("  \"job_id\": \"").append(jobId).append("\",\n");
+            json.append("  \"status\": \"").append(job.getStatus().name().toLowerCase()).append("\",\n");
+            json.append("  \"summary\": \"").append(JsonUtils.escape(partialSummary != null ? partialSummary : "")).append("\",\n");
+            json.append("  \"partial\": true\n");
+            json.append("}");
+            return json.toString();
+        }
+        
         if (job.getStatus() != JobStatus.COMPLETED) {
             throw new Exception("Job is not completed yet. Current status: " + job.getStatus().name().toLowerCase());
         }
         
-        Timestamp createdAt = jobDao.getCreatedAt(jobId);
-        Timestamp updatedAt = jobDao.getUpdatedAt(jobId);
-        
-        String cacheKey = CacheKeyGenerator.generate(job.getInputContent(), job.isUrl());
-        boolean cached = redisCache.get(cacheKey) != null;
-        long processingTimeMs = TimeUtils.calculateProcessingTimeMs(createdAt, updatedAt);
+        String cacheKey = CacheKeyGenerator.forJob(job);
+        // Memory tier only: a summary_cache SELECT on every result read would cost more than the flag is worth
+        boolean cached = redisCache.hasLocalSummary(cacheKey);
+        long processingTimeMs = TimeUtils.calculateProcessingTimeMs(job.getCreatedAt(), job.getUpdatedAt());
         
         StringBuilder json = new StringBuilder();
         json.append("{\n");
@@ -120,6 +138,7 @@ public abstract class ContentSummarizerService {
         json.append("  \"original_input\": \"").append(JsonUtils.escape(job.getInputContent())).append("\",\n");
         json.append("  \"summary\": \"").append(JsonUtils.escape(job.getOutputContent() != null ? job.getOutputContent() : "")).append("\",\n");
         json.append("  \"cached\": ").append(cached).append(",\n");
+        json.append("  \"near_duplicate\": ").append(job.getNearDuplicateOf() != null).append(",\n");
         json.append("  \"processing_time_ms\": ").append(processingTimeMs).append("\n");
         json.append("}");
         
@@ -1,13 +1,13 @@
 package service;
 
 import strategy.SummaryStrategy;
-import strategy.HuggingFaceStrategy;
+import strategy.StrategyRegistry;
 
 public class ContentSummarizerServiceImpl extends ContentSummarizerService {
     
     @Override
     protected SummaryStrategy getStrategy() {
-        return new HuggingFaceStrategy();
+        return StrategyRegistry.getInstance().get(StrategyRegistry.DEFAULT);
     }
 }
 
@@ -0,0 +1,174 @@
+package strategy;
+
+import config.DatabaseConfiguration;
+import util.FutureUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Micro-batching (BATCHING_ENABLED=true): texts of at most BATCH_MAX_ITEM_CHARS are collected for up to
+ * BATCH_WINDOW_MS or BATCH_MAX_ITEMS texts and summarized with one model call. The prompt numbers the
+ * texts as [1], [2], ... and asks for one "[n] summary" line each; a text whose summary is missing from
+ * the reply, or every text of a batch whose call failed, is summarized on its own instead.
+ */
+public class BatchingSummaryStrategy implements SummaryStrategy {
+    private static final Pattern ITEM_LINE = Pattern.compile("^\\s*\\[(\\d{1,4})\\]\\s*:?\\s*(.*)$");
+    private static final String INSTRUCTIONS = "Summarize each of the following numbered texts separately, in one or two sentences. " +
+        "Reply with exactly one line per text in the form [number] summary, using the same numbers, and nothing else.";
+    
+    private final SummaryStrategy delegate;
+    private final int maxItems;
+    private final long windowMs;
+    private final int maxItemChars;
+    private final ScheduledExecutorService scheduler;
+    private List<PendingItem> pending = new ArrayList<>();
+    private ScheduledFuture<?> flushTimer;
+    
+    public BatchingSummaryStrategy(SummaryStrategy delegate) {
+        this.delegate = delegate;
+        this.maxItems = Math.max(2, DatabaseConfiguration.getIntEnv("BATCH_MAX_ITEMS", 8));
+        this.windowMs = Math.max(1, DatabaseConfiguration.getIntEnv("BATCH_WINDOW_MS", 50));
+        this.maxItemChars = Math.max(1, DatabaseConfiguration.getIntEnv("BATCH_MAX_ITEM_CHARS", 600));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "summary-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public static boolean isEnabled() {
+        return DatabaseConfiguration.getBooleanEnv("BATCHING_ENABLED", false);
+    }
+    
+    @Override
+    public CompletableFuture<String> generateSummaryAsync(String content) {
+        if (content == null || content.trim().isEmpty() || content.length() > maxItemChars) {
+            return delegate.generateSummaryAsync(content);
+        }
+        PendingItem item = new PendingItem(content);
+        List<PendingItem> batch = null;
+        synchronized (this) {
+            pending.add(item);
+            if (pending.size() >= maxItems) {
+                batch = takePending();
+            } else if (pending.size() == 1) {
+                flushTimer = scheduler.schedule(this::flushPending, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (batch != null) {
+            send(batch);
+        }
+        return item.result;
+    }
+    
+    /**
+     * Batched texts are short and answered together, so only texts that go to the model alone stream partials
+     */
+    @Override
+    public CompletableFuture<String> generateSummaryAsync(String content, Consumer<String> onPartial) {
+        if (content == null || content.trim().isEmpty() || content.length() > maxItemChars) {
+            return delegate.generateSummaryAsync(content, onPartial);
+        }
+        return generateSummaryAsync(content);
+    }
+    
+    private synchronized List<PendingItem> takePending() {
+        List<PendingItem> batch = pending;
+        pending = new ArrayList<>();
+        if (flushTimer != null) {
+            flushTimer.cancel(false);
+            flushTimer = null;
+        }
+        return batch;
+    }
+    
+    private void flushPending() {
+        List<PendingItem> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) return;
+            batch = takePending();
+        }
+        send(batch);
+    }
+    
+    private void send(List<PendingItem> batch) {
+        if (batch.size() == 1) {
+            sendAlone(batch.get(0));
+            return;
+        }
+        delegate.generateSummaryAsync(buildPrompt(batch)).whenComplete((response, error) -> {
+            Map<Integer, String> summaries = error == null ? parseReply(response) : Collections.emptyMap();
+            int missing = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                String summary = summaries.get(i + 1);
+                if (summary != null && !summary.isEmpty()) {
+                    batch.get(i).result.complete(summary);
+                } else {
+                    missing++;
+                    sendAlone(batch.get(i));
+                }
+            }
+            if (missing > 0) {
+                System.err.println("Batch of " + batch.size() + " texts: " + missing + " summarized individually" +
+                    (error != null ? " after batch call failed: " + error.getMessage() : " (missing from reply)"));
+            }
+        });
+    }
+    
+    private void sendAlone(PendingItem item) {
+        delegate.generateSummaryAsync(item.content).whenComplete((summary, error) -> {
+            if (error != null) {
+                item.result.completeExceptionally(FutureUtils.unwrap(error));
+            } else {
+                item.result.complete(summary);
+            }
+        });
+    }
+    
+    private String buildPrompt(List<PendingItem> batch) {
+        StringBuilder prompt = new StringBuilder(INSTRUCTIONS);
+        for (int i = 0; i < batch.size(); i++) {
+            // Keep each text on its own line so a newline inside it cannot look like the next number
+            prompt.append("\n\n[").append(i + 1).append("] ").append(batch.get(i).content.replaceAll("\\s+", " ").trim());
+        }
+        return prompt.toString();
+    }
+    
+    /**
+     * Summaries by number; lines after a "[n]" line that do not start a new number continue its summary
+     */
+    static Map<Integer, String> parseReply(String reply) {
+        Map<Integer, String> summaries = new HashMap<>();
+        Integer current = null;
+        for (String line : reply.split("\\r?\\n")) {
+            Matcher matcher = ITEM_LINE.matcher(line);
+            if (matcher.matches()) {
+                current = Integer.parseInt(matcher.group(1));
+                summaries.put(current, matcher.group(2).trim());
+            } else if (current != null && !line.trim().isEmpty()) {
+                summaries.put(current, (summaries.get(current) + " " + line.trim()).trim());
+            }
+        }
+        return summaries;
+    }
+    
+    private static class PendingItem {
+        final String content;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        
+        PendingItem(String content) {
+            this.content = content;
+        }
+    }
+}
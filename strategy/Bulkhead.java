@@ -0,0 +1,79 @@
+package strategy;
+
+import util.FutureUtils;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Caps one strategy at maxConcurrent calls in flight, with up to maxQueued more waiting for a slot.
+ * Calls beyond that are rejected straight away, so a slow provider cannot tie up every worker.
+ */
+public class Bulkhead {
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final Deque<Runnable> queued = new ArrayDeque<>();
+    private int active;
+    
+    public Bulkhead(String name, int maxConcurrent, int maxQueued) {
+        this.name = name;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueued = Math.max(0, maxQueued);
+    }
+    
+    /**
+     * Starts the call now if a slot is free, later if there is room in the queue; otherwise the
+     * returned future fails with RejectedExecutionException
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> run(call, result);
+        synchronized (this) {
+            if (active >= maxConcurrent) {
+                if (queued.size() >= maxQueued) {
+                    return CompletableFuture.failedFuture(new RejectedExecutionException("Strategy " + name +
+                        " is at capacity (" + maxConcurrent + " running, " + maxQueued + " queued)"));
+                }
+                queued.add(start);
+                return result;
+            }
+            active++;
+        }
+        start.run();
+        return result;
+    }
+    
+    private <T> void run(Supplier<CompletableFuture<T>> call, CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, error) -> {
+            // Free the slot first, so a caller reacting to the result sees the capacity it left
+            release();
+            if (error != null) {
+                result.completeExceptionally(FutureUtils.unwrap(error));
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+    
+    private void release() {
+        Runnable next;
+        synchronized (this) {
+            next = queued.poll();
+            if (next == null) {
+                active--;
+                return;
+            }
+        }
+        // The queued call takes over the slot
+        next.run();
+    }
+}
@@ -0,0 +1,198 @@
+package strategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Local extractive summarizer: picks the document's most representative sentences, in their original
+ * order, without a model call. Sentences are scored by the TF-IDF weight of their words, treating each
+ * sentence as a document, with a bonus for the opening sentences. Stateless, so one instance is shared
+ * by every thread; about 10k characters take a few milliseconds.
+ * Used for "fast" jobs, as the fallback when every model fails, and when the worker is overloaded.
+ */
+public class ExtractiveSummaryStrategy implements SummaryStrategy {
+    public static final String NAME = "extractive";
+    
+    private static final int MIN_SENTENCES = 2;
+    private static final int MAX_SENTENCES = 5;
+    // Share of the document's sentences kept, before the MAX_SENTENCES cap
+    private static final double SENTENCE_RATIO = 0.2;
+    // Words shorter than this are ignored, which removes most function words without a long list
+    private static final int MIN_WORD_LENGTH = 3;
+    // Extra weight for the first sentences, where articles usually state their point
+    private static final double[] LEAD_BONUS = {0.5, 0.25, 0.1};
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+        "the", "and", "for", "are", "but", "not", "you", "all", "any", "can", "had", "her", "was", "one",
+        "our", "out", "has", "him", "his", "how", "its", "may", "who", "did", "she", "use", "way", "also",
+        "that", "this", "with", "have", "from", "they", "will", "would", "there", "their", "what", "about",
+        "which", "when", "were", "been", "than", "them", "then", "into", "more", "some", "such", "only",
+        "other", "these", "those", "could", "should", "your", "each", "over", "after", "very", "just"));
+    
+    @Override
+    public String generateSummary(String content) throws Exception {
+        if (content == null || content.trim().isEmpty()) {
+            throw new Exception("Content cannot be empty");
+        }
+        return summarize(content);
+    }
+    
+    @Override
+    public CompletableFuture<String> generateSummaryAsync(String content) {
+        try {
+            return CompletableFuture.completedFuture(generateSummary(content));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    private String summarize(String text) {
+        int[] bounds = sentenceBounds(text);
+        int sentences = bounds.length / 2;
+        int keep = Math.max(MIN_SENTENCES, Math.min(MAX_SENTENCES, (int) Math.round(sentences * SENTENCE_RATIO)));
+        if (sentences <= keep) {
+            return text.trim();
+        }
+        
+        // Per word: [sentences containing it, occurrences, last sentence counted, last sentence scored]
+        Map<String, int[]> words = new HashMap<>();
+        String[][] sentenceWords = new String[sentences][];
+        List<String> buffer = new ArrayList<>();
+        for (int s = 0; s < sentences; s++) {
+            buffer.clear();
+            collectWords(text, bounds[2 * s], bounds[2 * s + 1], buffer);
+            sentenceWords[s] = buffer.toArray(new String[0]);
+            for (String word : sentenceWords[s]) {
+                int[] stats = words.computeIfAbsent(word, w -> new int[] {0, 0, -1, -1});
+                if (stats[2] != s) {
+                    stats[0]++;
+                    stats[2] = s;
+                }
+                stats[1]++;
+            }
+        }
+        
+        double[] scores = new double[sentences];
+        for (int s = 0; s < sentences; s++) {
+            if (sentenceWords[s].length == 0) continue;
+            double score = 0;
+            for (String word : sentenceWords[s]) {
+                int[] stats = words.get(word);
+                if (stats[3] != s) {
+                    stats[3] = s;
+                    score += stats[1] * Math.log((double) sentences / stats[0]);
+                }
+            }
+            // Square root length normalization: long sentences carry more words but should not win on length alone
+            scores[s] = score / Math.sqrt(sentenceWords[s].length);
+        }
+        double top = 0;
+        for (double score : scores) {
+            top = Math.max(top, score);
+        }
+        for (int s = 0; s < LEAD_BONUS.length && s < sentences; s++) {
+            scores[s] += LEAD_BONUS[s] * top;
+        }
+        
+        boolean[] selected = new boolean[sentences];
+        boolean[] excluded = new boolean[sentences];
+        for (int k = 0; k < keep; k++) {
+            int best = -1;
+            for (int s = 0; s < sentences; s++) {
+                if (!excluded[s] && sentenceWords[s].length > 0 && (best < 0 || scores[s] > scores[best])) {
+                    best = s;
+                }
+            }
+            if (best < 0) break;
+            selected[best] = true;
+            // Repeated sentences (boilerplate, pull quotes) would otherwise fill the summary with copies
+            for (int s = 0; s < sentences; s++) {
+                if (s == best || sameText(text, bounds, s, best)) {
+                    excluded[s] = true;
+                }
+            }
+        }
+        
+        StringBuilder summary = new StringBuilder();
+        for (int s = 0; s < sentences; s++) {
+            if (selected[s]) {
+                if (summary.length() > 0) summary.append(' ');
+                summary.append(text, bounds[2 * s], bounds[2 * s + 1]);
+            }
+        }
+        return summary.toString();
+    }
+    
+    /**
+     * Start and end offsets of each sentence, trimmed, as consecutive pairs. A sentence ends at '.', '!'
+     * or '?' followed by whitespace (closing quotes and brackets stay with it), or at a blank line
+     */
+    private static int[] sentenceBounds(String text) {
+        int[] bounds = new int[32];
+        int count = 0;
+        int length = text.length();
+        int start = 0;
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            int end = -1;
+            if (c == '.' || c == '!' || c == '?') {
+                int j = i + 1;
+                while (j < length && "\"')]".indexOf(text.charAt(j)) >= 0) j++;
+                if (j == length || Character.isWhitespace(text.charAt(j))) end = j;
+            } else if (c == '\n' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                end = i;
+            }
+            if (end < 0) {
+                i++;
+                continue;
+            }
+            count = addSentence(text, start, end, bounds, count);
+            if (count * 2 == bounds.length) bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            start = end;
+            i = end + 1;
+        }
+        count = addSentence(text, start, length, bounds, count);
+        return Arrays.copyOf(bounds, count * 2);
+    }
+    
+    private static boolean sameText(String text, int[] bounds, int a, int b) {
+        int length = bounds[2 * a + 1] - bounds[2 * a];
+        return length == bounds[2 * b + 1] - bounds[2 * b] && text.regionMatches(bounds[2 * a], text, bounds[2 * b], length);
+    }
+    
+    private static int addSentence(String text, int start, int end, int[] bounds, int count) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) end--;
+        if (start == end) return count;
+        bounds[2 * count] = start;
+        bounds[2 * count + 1] = end;
+        return count + 1;
+    }
+    
+    /**
+     * Appends the lowercased words of text[start, end) that are long enough and not stop words
+     */
+    private static void collectWords(String text, int start, int end, List<String> words) {
+        StringBuilder word = new StringBuilder(16);
+        for (int i = start; i <= end; i++) {
+            char c = i < end ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+                continue;
+            }
+            if (word.length() >= MIN_WORD_LENGTH) {
+                String w = word.toString();
+                if (!STOP_WORDS.contains(w)) {
+                    words.add(w);
+                }
+            }
+            word.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package strategy;
+
+/**
+ * Caps hedged requests to a share of all requests: every request earns a fraction of a token and every
+ * hedge spends a whole one. Unspent tokens are capped, so a quiet period cannot bank a burst of hedges
+ * that would double load exactly when a provider is slow for everyone.
+ */
+public class HedgeBudget {
+    private final double tokensPerRequest;
+    private final double maxTokens;
+    private double tokens;
+    
+    public HedgeBudget(int percent, double maxTokens) {
+        this.tokensPerRequest = Math.max(0, Math.min(100, percent)) / 100.0;
+        this.maxTokens = maxTokens;
+    }
+    
+    public synchronized void deposit() {
+        tokens = Math.min(maxTokens, tokens + tokensPerRequest);
+    }
+    
+    public synchronized boolean tryWithdraw() {
+        if (tokens < 1) return false;
+        tokens -= 1;
+        return true;
+    }
+}
@@ -1,97 +1,291 @@
 package strategy;
 
+import config.DatabaseConfiguration;
+import util.FutureUtils;
+import util.TokenEstimator;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class HuggingFaceStrategy implements SummaryStrategy {
     
     // Using a different model to avoid Groq limits
     // Try using meta-llama/Llama-3.1-8B-Instruct or other available models
-    private static final String API_URL = "https://router.huggingface.co/v1/chat/completions";
+    private static final String API_URL = DatabaseConfiguration.getEnv("HF_API_URL", "https://router.huggingface.co/v1/chat/completions");
+    private static final String SYSTEM_MESSAGE = "You are a helpful assistant that provides concise summaries. Always follow the user's instructions exactly.";
+    // System message plus the chat template's per-message tokens
+    private static final int PROMPT_OVERHEAD_TOKENS = TokenEstimator.estimate(SYSTEM_MESSAGE) + 32;
+    // Share of a trimmed input kept from its beginning; the rest comes from its end
+    private static final double HEAD_SHARE = 0.7;
+    private static final String TRIM_MARKER = "\n[...]\n";
+    
+    // Try different models - fallback if one hits limit
+    private static final String DEFAULT_MODELS = "meta-llama/Llama-3.1-8B-Instruct," +
+        "mistralai/Mistral-7B-Instruct-v0.2," +
+        "google/gemma-7b-it," +
+        "microsoft/Phi-3-mini-4k-instruct";
+    
+    // Shared by every instance so health and latency stats cover all calls to a model
+    private static final List<String> MODELS = parseModels(DatabaseConfiguration.getEnv("HF_MODELS", DEFAULT_MODELS));
+    private static final ModelRouter ROUTER = new ModelRouter(MODELS);
+    
+    // One long-lived client for every call: HTTP/2 multiplexes concurrent requests over a single
+    // TLS connection instead of a handshake per summary
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .connectTimeout(Duration.ofSeconds(10))
+        .build();
+    
+    // Read once; changing the token requires a restart
+    private static final String API_TOKEN = getTokenFromEnv();
+    
+    // Opt-in hedging: a second model is asked when the first is slower than its usual HEDGE_PERCENTILE latency
+    private static final boolean HEDGING_ENABLED = DatabaseConfiguration.getBooleanEnv("HEDGING_ENABLED", false);
+    private static final double HEDGE_PERCENTILE = Math.max(50, Math.min(99, DatabaseConfiguration.getIntEnv("HEDGE_PERCENTILE", 95)));
+    private static final HedgeBudget HEDGE_BUDGET = new HedgeBudget(DatabaseConfiguration.getIntEnv("HEDGE_BUDGET_PERCENT", 10), 10);
+    
+    // Ask for server-sent events and hand out the summary as it is generated
+    private static final boolean STREAMING = DatabaseConfiguration.getBooleanEnv("HF_STREAMING", false);
+    
+    // Token bucket per model, sized to this node's share of HF_RATE_LIMIT_PER_MINUTE across HF_RATE_LIMIT_NODES
+    private static final Map<String, RateLimiter> RATE_LIMITERS = new ConcurrentHashMap<>();
+    private static final int RATE_LIMIT_NODES = Math.max(1, DatabaseConfiguration.getIntEnv("HF_RATE_LIMIT_NODES", 1));
+    private static final double RATE_LIMIT_PER_SECOND =
+        Math.max(1, DatabaseConfiguration.getIntEnv("HF_RATE_LIMIT_PER_MINUTE", 300)) / 60.0 / RATE_LIMIT_NODES;
+    private static final int RATE_LIMIT_BURST = Math.max(1, DatabaseConfiguration.getIntEnv("HF_RATE_LIMIT_BURST", 10));
+    // A model whose next permit is further away than this is skipped for the next one; the last model is waited for
+    private static final long RATE_LIMIT_SKIP_MS = Math.max(0, DatabaseConfiguration.getIntEnv("HF_RATE_LIMIT_SKIP_MS", 1000));
+    
+    @Override
+    public CompletableFuture<String> generateSummaryAsync(String text) {
+        return generateSummaryAsync(text, null);
+    }
     
     @Override
-    public String generateSummary(String text) throws Exception {
+    public CompletableFuture<String> generateSummaryAsync(String text, Consumer<String> onPartial) {
         if (text == null || text.trim().isEmpty()) {
-            throw new IllegalArgumentException("Content cannot be null or empty");
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Content cannot be null or empty"));
         }
-        
-        String apiToken = getTokenFromEnv();
-        if (apiToken == null || apiToken.isEmpty()) {
-            throw new IllegalStateException("Hugging Face API token not found. Set HUGGING_FACE_TOKEN in .env file");
+        if (API_TOKEN == null || API_TOKEN.isEmpty()) {
+            return CompletableFuture.failedFuture(
+                new IllegalStateException("Hugging Face API token not found. Set HUGGING_FACE_TOKEN in .env file"));
         }
-        
-        HttpClient client = HttpClient.newHttpClient();
-        
-        // Use chat completions format - increase max_tokens to get full response
-        String escapedText = escapeJson(text);
-        String systemMessage = "You are a helpful assistant that provides concise summaries. Always follow the user's instructions exactly.";
-        String userMessage = escapedText;
-        
-        // Try different models - fallback if one hits limit
-        String[] models = {
-            "meta-llama/Llama-3.1-8B-Instruct",
-            "mistralai/Mistral-7B-Instruct-v0.2",
-            "google/gemma-7b-it",
-            "microsoft/Phi-3-mini-4k-instruct"
-        };
-        
-        Exception lastException = null;
-        for (String model : models) {
-            try {
-                String jsonBody = String.format(
-                    "{\"model\":\"%s\",\"messages\":[{\"role\":\"system\",\"content\":\"%s\"},{\"role\":\"user\",\"content\":\"%s\"}],\"max_tokens\":300,\"temperature\":0.3}",
-                    model,
-                    escapeJson(systemMessage),
-                    userMessage
-                );
-                
-                HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(API_URL))
-                    .header("Authorization", "Bearer " + apiToken)
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-                    .build();
-                
-                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-                String responseBody = response.body();
-                
-                if (response.statusCode() == 200) {
-                    // Success - parse and return
-                    if (responseBody == null || responseBody.isEmpty()) {
-                        throw new Exception("Empty response from Hugging Face API");
-                    }
-                    String summary = extractContentFromResponse(responseBody);
-                    if (summary == null || summary.isEmpty() || summary.equals(responseBody)) {
-                        throw new Exception("Failed to generate summary. API response: " + responseBody);
-                    }
-                    return summary;
-                } else if (response.statusCode() == 402) {
-                    // Rate limit or usage limit - try next model
-                    System.err.println("Model " + model + " hit usage limit, trying next model...");
-                    lastException = new Exception("Model " + model + " limit reached: " + responseBody);
-                    continue;
-                } else {
-                    // Other error - try next model
-                    System.err.println("Model " + model + " error " + response.statusCode() + ", trying next...");
-                    lastException = new Exception("Hugging Face API error: " + response.statusCode() + " - " + responseBody);
-                    continue;
+        Prompt prompt = new Prompt(text);
+        ModelRouter.Route route = ROUTER.route();
+        if (route.getModels().isEmpty()) {
+            return CompletableFuture.failedFuture(new Exception("All models failed. Every model's circuit is open"));
+        }
+        if (HEDGING_ENABLED && route.getModels().size() > 1) {
+            return hedged(prompt, route, onPartial);
+        }
+        return tryModel(prompt, route, null, new Call(onPartial, new AtomicInteger()));
+    }
+    
+    /**
+     * Sends the prompt to the first model, and once it has been slower than its observed HEDGE_PERCENTILE
+     * latency (and the budget allows) to the next model neither call has tried yet as well. The first
+     * success wins and the other call is cancelled. Without enough latency samples for the first model
+     * there is no threshold, so no hedge. Only the first call streams partial text, so two racing
+     * responses never interleave.
+     */
+    private CompletableFuture<String> hedged(Prompt prompt, ModelRouter.Route route, Consumer<String> onPartial) {
+        List<String> models = route.getModels();
+        HEDGE_BUDGET.deposit();
+        long delayMs = ROUTER.latencyPercentile(models.get(0), HEDGE_PERCENTILE);
+        HedgedCall hedgedCall = new HedgedCall(onPartial);
+        tryModel(prompt, route, null, hedgedCall.primary)
+            .whenComplete((summary, error) -> hedgedCall.settle(hedgedCall.primary, summary, error));
+        if (delayMs >= 0) {
+            CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS).execute(() -> {
+                if (hedgedCall.cursor.get() < models.size() && hedgedCall.startHedge()) {
+                    System.out.println("Hedging " + models.get(0) + " after " + delayMs + "ms");
+                    tryModel(prompt, route, null, hedgedCall.hedge)
+                        .whenComplete((summary, error) -> hedgedCall.settle(hedgedCall.hedge, summary, error));
                 }
-            } catch (Exception e) {
-                lastException = e;
-                continue;
+            });
+        }
+        return hedgedCall.result;
+    }
+    
+    /**
+     * Sends the prompt to the next model of the request no call has tried yet, once its rate limiter allows,
+     * moving on when it fails or its permit is too far away. Every outcome is reported to the router, which
+     * orders the models for the next request, and to the model's rate limiter. A half-open probe the
+     * request holds is settled by its outcome, or given back when the model is skipped or the call cancelled.
+     */
+    private CompletableFuture<String> tryModel(Prompt prompt, ModelRouter.Route route, Exception lastException, Call call) {
+        if (call.cancelled) {
+            return CompletableFuture.failedFuture(new CancellationException("Summary request cancelled"));
+        }
+        List<String> models = route.getModels();
+        int index = call.cursor.getAndIncrement();
+        if (index >= models.size()) {
+            // All models failed
+            return CompletableFuture.failedFuture(new Exception("All models failed. Last error: " +
+                (lastException != null ? lastException.getMessage() : "Unknown error")));
+        }
+        String model = models.get(index);
+        if (lastException != null && call.onPartial != null) {
+            // A fallback model starts its answer over; drop what the failed one streamed
+            call.onPartial.accept("");
+        }
+        RateLimiter limiter = rateLimiter(model);
+        long maxWaitMs = index == models.size() - 1 ? Long.MAX_VALUE : RATE_LIMIT_SKIP_MS;
+        return limiter.acquire(maxWaitMs).thenCompose(permitted -> {
+            if (permitted) {
+                return send(prompt, route, model, call, limiter);
             }
+            ROUTER.releaseProbe(model, route.isProbe(model));
+            return tryModel(prompt, route, new Exception("Model " + model + " rate limited"), call);
+        });
+    }
+    
+    private CompletableFuture<String> send(Prompt prompt, ModelRouter.Route route, String model, Call call, RateLimiter limiter) {
+        boolean probe = route.isProbe(model);
+        if (call.cancelled) {
+            ROUTER.releaseProbe(model, probe);
+            return CompletableFuture.failedFuture(new CancellationException("Summary request cancelled"));
+        }
+        long startedAt = System.nanoTime();
+        HttpResponse.BodyHandler<String> bodyHandler = STREAMING ? streamingBodyHandler(call.onPartial) : HttpResponse.BodyHandlers.ofString();
+        CompletableFuture<HttpResponse<String>> request = CLIENT.sendAsync(buildRequest(model, prompt), bodyHandler);
+        call.inFlight = request;
+        return request
+            .handle((response, error) -> {
+                if (call.cancelled) {
+                    // Lost a hedge race; neither a failure nor a latency sample, but a probe it was is given back
+                    ROUTER.releaseProbe(model, probe);
+                    return CompletableFuture.<String>failedFuture(new CancellationException("Summary request cancelled"));
+                }
+                if (error != null) {
+                    ROUTER.recordFailure(model, false, probe);
+                    Throwable cause = FutureUtils.unwrap(error);
+                    return tryModel(prompt, route, cause instanceof Exception ? (Exception) cause : new Exception(cause), call);
+                }
+                limiter.observe(response.statusCode(), response.headers());
+                try {
+                    String summary = parseResponse(model, response);
+                    ROUTER.recordSuccess(model, (System.nanoTime() - startedAt) / 1_000_000, probe);
+                    return CompletableFuture.completedFuture(summary);
+                } catch (Exception e) {
+                    ROUTER.recordFailure(model, response.statusCode() == 402 || response.statusCode() == 429, probe);
+                    return tryModel(prompt, route, e, call);
+                }
+            })
+            .thenCompose(next -> next);
+    }
+    
+    /**
+     * Input budget of the routed model with the smallest context, so input sized to it fits whichever model serves the call
+     */
+    public static int minInputBudget() {
+        int budget = Integer.MAX_VALUE;
+        for (String model : MODELS) {
+            budget = Math.min(budget, ModelProfile.forModel(model).inputBudget(PROMPT_OVERHEAD_TOKENS));
         }
+        return budget;
+    }
+    
+    /**
+     * Input over the model's budget (context minus output budget and prompt overhead) is cut down to its
+     * beginning and end, so it fits instead of failing and falling through to the next model
+     */
+    private HttpRequest buildRequest(String model, Prompt prompt) {
+        ModelProfile profile = ModelProfile.forModel(model);
+        int inputBudget = profile.inputBudget(PROMPT_OVERHEAD_TOKENS);
+        String userMessage = prompt.tokens <= inputBudget
+            ? prompt.escaped()
+            : escapeJson(TokenEstimator.trimHeadAndTail(prompt.text, inputBudget, HEAD_SHARE, TRIM_MARKER));
+        
+        // Use chat completions format - max_tokens from the model's output budget
+        String jsonBody = String.format(
+            "{\"model\":\"%s\",\"messages\":[{\"role\":\"system\",\"content\":\"%s\"},{\"role\":\"user\",\"content\":\"%s\"}],\"max_tokens\":%d,\"temperature\":0.3%s}",
+            model,
+            escapeJson(SYSTEM_MESSAGE),
+            userMessage,
+            profile.getMaxOutputTokens(),
+            STREAMING ? ",\"stream\":true" : ""
+        );
         
-        // All models failed
-        throw new Exception("All models failed. Last error: " + (lastException != null ? lastException.getMessage() : "Unknown error"));
+        return HttpRequest.newBuilder()
+            .uri(URI.create(API_URL))
+            .header("Authorization", "Bearer " + API_TOKEN)
+            .header("Content-Type", "application/json")
+            .timeout(Duration.ofSeconds(60))
+            .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
+            .build();
+    }
+    
+    /**
+     * A 200 response is read as an SSE stream and its body becomes the text assembled from the deltas;
+     * any other status is read whole, as the error it describes is not streamed
+     */
+    private HttpResponse.BodyHandler<String> streamingBodyHandler(Consumer<String> onPartial) {
+        return info -> info.statusCode() == 200
+            ? HttpResponse.BodySubscribers.fromLineSubscriber(new StreamedCompletion(onPartial), StreamedCompletion::text, StandardCharsets.UTF_8, null)
+            : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+    }
+    
+    private String parseResponse(String model, HttpResponse<String> response) throws Exception {
+        String responseBody = response.body();
         
+        if (response.statusCode() == 200 && STREAMING) {
+            // Already assembled from the stream's deltas
+            if (responseBody == null || responseBody.trim().isEmpty()) {
+                throw new Exception("Empty streamed response from model " + model);
+            }
+            return responseBody.trim();
+        } else if (response.statusCode() == 200) {
+            // Success - parse and return
+            if (responseBody == null || responseBody.isEmpty()) {
+                throw new Exception("Empty response from Hugging Face API");
+            }
+            String summary = extractContentFromResponse(responseBody);
+            if (summary == null || summary.isEmpty() || summary.equals(responseBody)) {
+                throw new Exception("Failed to generate summary. API response: " + responseBody);
+            }
+            return summary;
+        } else if (response.statusCode() == 402 || response.statusCode() == 429) {
+            // Rate limit or usage limit - try next model
+            System.err.println("Model " + model + " hit usage limit, trying next model...");
+            throw new Exception("Model " + model + " limit reached: " + responseBody);
+        } else {
+            // Other error - try next model
+            System.err.println("Model " + model + " error " + response.statusCode() + ", trying next...");
+            throw new Exception("Hugging Face API error: " + response.statusCode() + " - " + responseBody);
+        }
+    }
+    
+    private static RateLimiter rateLimiter(String model) {
+        return RATE_LIMITERS.computeIfAbsent(model, m -> new RateLimiter(m, RATE_LIMIT_PER_SECOND, RATE_LIMIT_BURST, RATE_LIMIT_NODES));
+    }
+    
+    private static List<String> parseModels(String value) {
+        List<String> models = new ArrayList<>();
+        for (String model : value.split(",")) {
+            if (!model.trim().isEmpty()) {
+                models.add(model.trim());
+            }
+        }
+        return models.isEmpty() ? parseModels(DEFAULT_MODELS) : models;
     }
     
-    private String getTokenFromEnv() {
+    private static String getTokenFromEnv() {
         // Try system environment variable first
         String token = System.getenv("HUGGING_FACE_TOKEN");
         if (token != null && !token.isEmpty()) return token;
@@ -280,4 +474,132 @@ public class HuggingFaceStrategy implements SummaryStrategy {
                    .replace("\\\"", "\"")
                    .replace("\\\\", "\\");
     }
+    
+    /**
+     * The input text with its token estimate, computed once however many models it is sent to
+     */
+    private class Prompt {
+        final String text;
+        final int tokens;
+        private String escaped;
+        
+        Prompt(String text) {
+            this.text = text;
+            this.tokens = TokenEstimator.estimate(text);
+        }
+        
+        synchronized String escaped() {
+            if (escaped == null) {
+                escaped = escapeJson(text);
+            }
+            return escaped;
+        }
+    }
+    
+    /**
+     * One chain of model attempts; cancelling it aborts the request in flight and stops the fallback
+     */
+    private static class Call {
+        // Receives the text so far while a streamed response arrives; null to not stream partials
+        final Consumer<String> onPartial;
+        // Index of the next model to try, shared by the calls racing for one request
+        final AtomicInteger cursor;
+        volatile boolean cancelled;
+        volatile CompletableFuture<?> inFlight;
+        
+        Call(Consumer<String> onPartial, AtomicInteger cursor) {
+            this.onPartial = onPartial;
+            this.cursor = cursor;
+        }
+        
+        void cancel() {
+            cancelled = true;
+            CompletableFuture<?> request = inFlight;
+            if (request != null) {
+                request.cancel(true);
+            }
+        }
+    }
+    
+    /**
+     * A primary call and its optional hedge racing for one result
+     */
+    private static class HedgedCall {
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        final AtomicInteger cursor = new AtomicInteger();
+        final Call primary;
+        final Call hedge = new Call(null, cursor);
+        private int pending = 1;
+        
+        HedgedCall(Consumer<String> onPartial) {
+            this.primary = new Call(onPartial, cursor);
+        }
+        
+        synchronized boolean startHedge() {
+            if (pending == 0 || result.isDone() || !HEDGE_BUDGET.tryWithdraw()) return false;
+            pending++;
+            return true;
+        }
+        
+        void settle(Call call, String summary, Throwable error) {
+            if (error == null) {
+                if (result.complete(summary)) {
+                    (call == primary ? hedge : primary).cancel();
+                }
+                return;
+            }
+            // Fail only once every started call has failed
+            synchronized (this) {
+                if (--pending > 0) return;
+            }
+            result.completeExceptionally(FutureUtils.unwrap(error));
+        }
+    }
+    
+    /**
+     * Assembles a streamed chat completion from its SSE lines ("data: {...choices[0].delta.content...}")
+     * as they arrive, passing the text so far to the partial consumer after every delta
+     */
+    private class StreamedCompletion implements Flow.Subscriber<String> {
+        private final StringBuilder text = new StringBuilder();
+        private final Consumer<String> onPartial;
+        
+        StreamedCompletion(Consumer<String> onPartial) {
+            this.onPartial = onPartial;
+        }
+        
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+        
+        @Override
+        public void onNext(String line) {
+            if (!line.startsWith("data:")) return;
+            String data = line.substring(5).trim();
+            if (data.equals("[DONE]")) return;
+            
+            int contentStart = data.indexOf("\"content\":\"");
+            if (contentStart == -1) return;
+            contentStart += 11;
+            int contentEnd = findEndOfJsonString(data, contentStart);
+            if (contentEnd <= contentStart) return;
+            text.append(unescapeJson(data.substring(contentStart, contentEnd)));
+            if (onPartial != null) {
+                onPartial.accept(text.toString());
+            }
+        }
+        
+        @Override
+        public void onError(Throwable throwable) {
+        }
+        
+        @Override
+        public void onComplete() {
+        }
+        
+        String text() {
+            return text.toString();
+        }
+    }
 }
@@ -0,0 +1,132 @@
+package strategy;
+
+import config.DatabaseConfiguration;
+import util.CacheKeyGenerator;
+import util.FutureUtils;
+import util.TextChunker;
+import util.TokenEstimator;
+import worker.RedisCache;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Long-document mode (LONG_DOC_ENABLED=true): text over one chunk's budget is split on sentence boundaries,
+ * the chunks are summarized in parallel (at most LONG_DOC_PARALLELISM at a time per document), and the
+ * chunk summaries are summarized together in a reduce pass. Chunk summaries are cached by the chunk's hash
+ * for LONG_DOC_CHUNK_TTL_SECONDS, so an edited document only pays for the chunks that changed.
+ * Chunks are measured with TokenEstimator and never exceed the input budget of the smallest routed model.
+ */
+public class MapReduceSummaryStrategy implements SummaryStrategy {
+    // Reduce passes before the combined summaries are sent as they are
+    private static final int MAX_DEPTH = 3;
+    private static final String REDUCE_PREFIX = "Summaries of consecutive sections of one document:\n\n";
+    
+    private final SummaryStrategy delegate;
+    private final RedisCache cache;
+    private final int chunkTokens;
+    private final int parallelism;
+    private final long chunkTtlMs;
+    
+    public MapReduceSummaryStrategy(SummaryStrategy delegate) {
+        this.delegate = delegate;
+        this.cache = RedisCache.getInstance();
+        // The reduce prompt carries REDUCE_PREFIX on top of a chunk's worth of summaries
+        int modelBudget = HuggingFaceStrategy.minInputBudget() - TokenEstimator.estimate(REDUCE_PREFIX);
+        this.chunkTokens = Math.max(100, Math.min(modelBudget, DatabaseConfiguration.getIntEnv("LONG_DOC_CHUNK_TOKENS", 1500)));
+        this.parallelism = parallelism();
+        this.chunkTtlMs = Math.max(1, DatabaseConfiguration.getIntEnv("LONG_DOC_CHUNK_TTL_SECONDS", 86400)) * 1000L;
+    }
+    
+    public static boolean isEnabled() {
+        return DatabaseConfiguration.getBooleanEnv("LONG_DOC_ENABLED", false);
+    }
+    
+    /**
+     * Chunk calls one document keeps in flight
+     */
+    public static int parallelism() {
+        return Math.max(1, DatabaseConfiguration.getIntEnv("LONG_DOC_PARALLELISM", 4));
+    }
+    
+    /**
+     * Longest page text the worker extracts for summarization in long-document mode
+     */
+    public static int maxDocumentChars() {
+        return Math.max(10000, DatabaseConfiguration.getIntEnv("LONG_DOC_MAX_CHARS", 200000));
+    }
+    
+    @Override
+    public CompletableFuture<String> generateSummaryAsync(String content) {
+        return summarize(content, 0, null);
+    }
+    
+    /**
+     * Only the call that produces the final summary streams partials; chunk summaries are not shown to clients
+     */
+    @Override
+    public CompletableFuture<String> generateSummaryAsync(String content, Consumer<String> onPartial) {
+        return summarize(content, 0, onPartial);
+    }
+    
+    private CompletableFuture<String> summarize(String content, int depth, Consumer<String> onPartial) {
+        if (content == null || TokenEstimator.estimate(content) <= chunkTokens) {
+            return delegate.generateSummaryAsync(content, onPartial);
+        }
+        List<String> chunks = TextChunker.splitByTokens(content, chunkTokens);
+        return mapChunks(chunks).thenCompose(summaries -> {
+            String combined = String.join("\n\n", summaries);
+            if (TokenEstimator.estimate(combined) <= chunkTokens || depth + 1 >= MAX_DEPTH) {
+                return delegate.generateSummaryAsync(REDUCE_PREFIX + combined, onPartial);
+            }
+            // The combined summaries are still too long for one call; reduce them the same way
+            return summarize(combined, depth + 1, onPartial);
+        });
+    }
+    
+    /**
+     * Summarizes every chunk, keeping at most `parallelism` model calls in flight
+     */
+    private CompletableFuture<List<String>> mapChunks(List<String> chunks) {
+        String[] summaries = new String[chunks.size()];
+        CompletableFuture<List<String>> done = new CompletableFuture<>();
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger remaining = new AtomicInteger(chunks.size());
+        for (int i = 0; i < Math.min(parallelism, chunks.size()); i++) {
+            summarizeNextChunk(chunks, summaries, next, remaining, done);
+        }
+        return done;
+    }
+    
+    private void summarizeNextChunk(List<String> chunks, String[] summaries, AtomicInteger next,
+                                    AtomicInteger remaining, CompletableFuture<List<String>> done) {
+        int index = next.getAndIncrement();
+        if (index >= chunks.size() || done.isDone()) return;
+        
+        String chunk = chunks.get(index);
+        String cacheKey = CacheKeyGenerator.forChunk(chunk);
+        String cached = cache.getSummary(cacheKey);
+        CompletableFuture<String> summary = cached != null
+            ? CompletableFuture.completedFuture(cached)
+            : delegate.generateSummaryAsync(chunk).thenApply(result -> {
+                cache.setSummary(cacheKey, result, chunkTtlMs);
+                return result;
+            });
+        
+        summary.whenComplete((result, error) -> {
+            if (error != null) {
+                // One failed chunk fails the document; chunks already summarized stay cached for the retry
+                done.completeExceptionally(FutureUtils.unwrap(error));
+                return;
+            }
+            summaries[index] = result;
+            if (remaining.decrementAndGet() == 0) {
+                done.complete(Arrays.asList(summaries));
+            } else {
+                summarizeNextChunk(chunks, summaries, next, remaining, done);
+            }
+        });
+    }
+}
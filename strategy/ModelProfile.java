@@ -0,0 +1,66 @@
+package strategy;
+
+import config.DatabaseConfiguration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Context window and output budget of a model, in tokens. Built-in profiles cover the default models;
+ * HF_MODEL_PROFILES (model=context:output, comma separated) adds or overrides them.
+ */
+public class ModelProfile {
+    private static final ModelProfile DEFAULT = new ModelProfile(4096, 300);
+    private static final Map<String, ModelProfile> PROFILES = loadProfiles();
+    
+    private final int contextTokens;
+    private final int maxOutputTokens;
+    
+    public ModelProfile(int contextTokens, int maxOutputTokens) {
+        this.contextTokens = contextTokens;
+        this.maxOutputTokens = maxOutputTokens;
+    }
+    
+    /**
+     * Profile of the model, or a conservative 4k context for models without one
+     */
+    public static ModelProfile forModel(String model) {
+        return PROFILES.getOrDefault(model, DEFAULT);
+    }
+    
+    public int getContextTokens() {
+        return contextTokens;
+    }
+    
+    public int getMaxOutputTokens() {
+        return maxOutputTokens;
+    }
+    
+    /**
+     * Tokens left for the input once the output budget and the given prompt overhead are reserved
+     */
+    public int inputBudget(int overheadTokens) {
+        return Math.max(0, contextTokens - maxOutputTokens - overheadTokens);
+    }
+    
+    private static Map<String, ModelProfile> loadProfiles() {
+        Map<String, ModelProfile> profiles = new HashMap<>();
+        profiles.put("meta-llama/Llama-3.1-8B-Instruct", new ModelProfile(131072, 300));
+        profiles.put("mistralai/Mistral-7B-Instruct-v0.2", new ModelProfile(32768, 300));
+        profiles.put("google/gemma-7b-it", new ModelProfile(8192, 300));
+        profiles.put("microsoft/Phi-3-mini-4k-instruct", new ModelProfile(4096, 300));
+        
+        for (String entry : DatabaseConfiguration.getEnv("HF_MODEL_PROFILES", "").split(",")) {
+            int equals = entry.lastIndexOf('=');
+            int colon = entry.lastIndexOf(':');
+            if (equals <= 0 || colon < equals) continue;
+            try {
+                profiles.put(entry.substring(0, equals).trim(), new ModelProfile(
+                    Integer.parseInt(entry.substring(equals + 1, colon).trim()),
+                    Integer.parseInt(entry.substring(colon + 1).trim())));
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring invalid model profile: " + entry);
+            }
+        }
+        return profiles;
+    }
+}
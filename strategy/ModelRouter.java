@@ -0,0 +1,245 @@
+package strategy;
+
+import config.DatabaseConfiguration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Picks the order in which models are tried, from what recent calls to each of them looked like.
+ * Every model has a circuit breaker: a burst of failures (or a single usage-limit response) opens it,
+ * and an open model is left out of the route until its cooldown ends. One request then probes it
+ * (half-open) and only that request settles the probe: success closes the breaker, failure re-opens it
+ * with a doubled cooldown, and a probe that was never answered (skipped or cancelled) is given back.
+ * When every circuit is open the route is empty and the caller falls back on its own.
+ * Among the closed models, those with enough samples are ranked by their rolling median latency.
+ */
+public class ModelRouter {
+    private static final int WINDOW = 128;
+    private static final long MAX_OPEN_MS = 10 * 60_000L;
+    // A probe whose outcome is never reported (e.g. the request died) stops blocking the next one after this
+    private static final long PROBE_TIMEOUT_MS = 2 * 60_000L;
+    
+    private final Map<String, ModelHealth> health = new LinkedHashMap<>();
+    private final int failureThreshold;
+    private final double maxErrorRate;
+    private final int minSamples;
+    private final long openMs;
+    
+    public ModelRouter(List<String> models) {
+        this.failureThreshold = Math.max(1, DatabaseConfiguration.getIntEnv("MODEL_BREAKER_FAILURES", 3));
+        this.maxErrorRate = Math.max(1, Math.min(100, DatabaseConfiguration.getIntEnv("MODEL_BREAKER_ERROR_RATE_PERCENT", 50))) / 100.0;
+        this.minSamples = Math.max(1, DatabaseConfiguration.getIntEnv("MODEL_ROUTER_MIN_SAMPLES", 5));
+        this.openMs = Math.max(1000, DatabaseConfiguration.getIntEnv("MODEL_BREAKER_OPEN_MS", 30_000));
+        int position = 0;
+        for (String model : models) {
+            health.put(model, new ModelHealth(model, position++));
+        }
+    }
+    
+    /**
+     * Models to try for one request, best first: a model due for its half-open probe, then closed models
+     * by median latency (unmeasured ones in configured order after the measured ones). Open models are
+     * left out; an empty route means every circuit is open.
+     */
+    public Route route() {
+        long now = System.currentTimeMillis();
+        List<ModelHealth> probes = new ArrayList<>();
+        List<ModelHealth> closed = new ArrayList<>();
+        for (ModelHealth model : health.values()) {
+            switch (model.admit(now)) {
+                case PROBE:
+                    probes.add(model);
+                    break;
+                case CLOSED:
+                    closed.add(model);
+                    break;
+                default:
+                    break;
+            }
+        }
+        closed.sort(Comparator.comparingLong((ModelHealth m) -> m.rankingLatency(minSamples))
+                .thenComparingInt(m -> m.position));
+        
+        List<String> order = new ArrayList<>(probes.size() + closed.size());
+        Set<String> probeNames = new HashSet<>();
+        for (ModelHealth model : probes) {
+            order.add(model.name);
+            probeNames.add(model.name);
+        }
+        for (ModelHealth model : closed) {
+            order.add(model.name);
+        }
+        return new Route(order, probeNames);
+    }
+    
+    /**
+     * probe is whether the reporting request holds the model's half-open probe (Route.isProbe)
+     */
+    public void recordSuccess(String model, long latencyMs, boolean probe) {
+        ModelHealth modelHealth = health.get(model);
+        if (modelHealth != null) {
+            modelHealth.success(latencyMs, probe);
+        }
+    }
+    
+    /**
+     * A usage or rate limit response opens the breaker straight away: every call until it resets would fail too
+     */
+    public void recordFailure(String model, boolean limitReached, boolean probe) {
+        ModelHealth modelHealth = health.get(model);
+        if (modelHealth != null) {
+            modelHealth.failure(limitReached, System.currentTimeMillis(), probe);
+        }
+    }
+    
+    /**
+     * A call that ended without an answer (skipped by the rate limiter, or cancelled after losing a hedge
+     * race) says nothing about the model's health, but if it held the half-open probe the next request may
+     * probe instead of waiting for PROBE_TIMEOUT_MS
+     */
+    public void releaseProbe(String model, boolean probe) {
+        ModelHealth modelHealth = health.get(model);
+        if (modelHealth != null && probe) {
+            modelHealth.releaseProbe();
+        }
+    }
+    
+    /**
+     * Latency percentile (0-100) of the model's recent successful calls, or -1 with fewer than the minimum samples
+     */
+    public long latencyPercentile(String model, double percentile) {
+        ModelHealth modelHealth = health.get(model);
+        return modelHealth != null ? modelHealth.percentile(percentile, minSamples) : -1;
+    }
+    
+    /**
+     * Models to try for one request, and the ones whose half-open probe it holds
+     */
+    public static class Route {
+        private final List<String> models;
+        private final Set<String> probes;
+        
+        Route(List<String> models, Set<String> probes) {
+            this.models = Collections.unmodifiableList(models);
+            this.probes = probes;
+        }
+        
+        public List<String> getModels() {
+            return models;
+        }
+        
+        public boolean isProbe(String model) {
+            return probes.contains(model);
+        }
+    }
+    
+    private enum Admission { CLOSED, PROBE, OPEN }
+    
+    private class ModelHealth {
+        final String name;
+        // Configured position, the tie-breaker between models without enough samples
+        final int position;
+        // Ring buffers of recent successful latencies and of recent outcomes
+        final long[] latencies = new long[WINDOW];
+        final boolean[] outcomes = new boolean[WINDOW];
+        int latencyCount;
+        int latencyNext;
+        int outcomeCount;
+        int outcomeNext;
+        int failuresInWindow;
+        int consecutiveFailures;
+        long openUntil;
+        long currentOpenMs = openMs;
+        long probeStartedAt;
+        
+        ModelHealth(String name, int position) {
+            this.name = name;
+            this.position = position;
+        }
+        
+        synchronized Admission admit(long now) {
+            if (openUntil == 0) return Admission.CLOSED;
+            if (now < openUntil || now - probeStartedAt < PROBE_TIMEOUT_MS) return Admission.OPEN;
+            probeStartedAt = now;
+            return Admission.PROBE;
+        }
+        
+        synchronized void success(long latencyMs, boolean probe) {
+            latencies[latencyNext] = latencyMs;
+            latencyNext = (latencyNext + 1) % WINDOW;
+            latencyCount = Math.min(WINDOW, latencyCount + 1);
+            recordOutcome(true);
+            consecutiveFailures = 0;
+            if (openUntil != 0 && !probe) {
+                // A call routed before the circuit opened; closing it again is up to the probe
+                return;
+            }
+            if (openUntil != 0) {
+                // Start the error rate over, the failures that opened the circuit are history
+                System.out.println("Model " + name + " recovered, closing its circuit");
+                outcomeCount = 0;
+                outcomeNext = 0;
+                failuresInWindow = 0;
+            }
+            openUntil = 0;
+            currentOpenMs = openMs;
+            probeStartedAt = 0;
+        }
+        
+        synchronized void failure(boolean limitReached, long now, boolean probe) {
+            recordOutcome(false);
+            consecutiveFailures++;
+            if (probe) {
+                // Failed probe: back off longer before the next one
+                probeStartedAt = 0;
+                currentOpenMs = Math.min(MAX_OPEN_MS, currentOpenMs * 2);
+                open(now);
+            } else if (openUntil == 0 && (limitReached || consecutiveFailures >= failureThreshold
+                    || (outcomeCount >= minSamples && failuresInWindow > maxErrorRate * outcomeCount))) {
+                open(now);
+            }
+        }
+        
+        synchronized void releaseProbe() {
+            probeStartedAt = 0;
+        }
+        
+        private void open(long now) {
+            openUntil = now + currentOpenMs;
+            System.err.println("Model " + name + " circuit opened for " + currentOpenMs + "ms after " +
+                consecutiveFailures + " consecutive failure(s)");
+        }
+        
+        private void recordOutcome(boolean success) {
+            if (outcomeCount == WINDOW && !outcomes[outcomeNext]) {
+                failuresInWindow--;
+            }
+            outcomes[outcomeNext] = success;
+            if (!success) {
+                failuresInWindow++;
+            }
+            outcomeNext = (outcomeNext + 1) % WINDOW;
+            outcomeCount = Math.min(WINDOW, outcomeCount + 1);
+        }
+        
+        synchronized long rankingLatency(int minSamples) {
+            long median = percentile(50, minSamples);
+            return median >= 0 ? median : Long.MAX_VALUE;
+        }
+        
+        synchronized long percentile(double percentile, int minSamples) {
+            if (latencyCount < minSamples) return -1;
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * latencyCount) - 1;
+            return sorted[Math.max(0, Math.min(latencyCount - 1, index))];
+        }
+    }
+}
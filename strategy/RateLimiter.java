@@ -0,0 +1,211 @@
+package strategy;
+
+import java.net.http.HttpHeaders;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Token bucket in front of one provider model. Permits are reserved in order and handed out asynchronously,
+ * so callers wait for their turn instead of sending a request that would be rejected.
+ * The rate adapts to the provider: a 429 halves it and pauses the bucket for Retry-After, rate-limit headers
+ * (remaining requests and reset time) set it directly, and each success raises it again towards the
+ * configured ceiling, so throughput settles just under the quota instead of oscillating.
+ * A pause also voids permits reserved before it: their holders reserve again when their wait is over,
+ * so nothing reserved earlier is sent inside a Retry-After window.
+ */
+public class RateLimiter {
+    // Pause after a 429 without a usable Retry-After
+    private static final long DEFAULT_PAUSE_MS = 1000;
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|s|m|h)");
+    private static final String[] REMAINING_HEADERS = {"x-ratelimit-remaining-requests", "x-ratelimit-remaining", "ratelimit-remaining"};
+    private static final String[] RESET_HEADERS = {"x-ratelimit-reset-requests", "x-ratelimit-reset", "ratelimit-reset"};
+    
+    private final String name;
+    private final double maxPerSecond;
+    private final double minPerSecond;
+    private final int burst;
+    // Share of a quota reported in headers that this node may use
+    private final double share;
+    private double perSecond;
+    private double tokens;
+    // Refill time in nanos; in the future while the bucket is paused
+    private long refilledAt;
+    // End of the current pause in nanos; one pause window halves the rate only once
+    private long pausedUntil;
+    // Incremented by every pause, so waiters can tell their reservation was voided
+    private long pauseGeneration;
+    
+    public RateLimiter(String name, double maxPerSecond, int burst, int nodes) {
+        this.name = name;
+        this.maxPerSecond = maxPerSecond;
+        this.minPerSecond = Math.max(1 / 60.0, maxPerSecond / 64);
+        this.burst = Math.max(1, burst);
+        this.share = 1.0 / Math.max(1, nodes);
+        this.perSecond = maxPerSecond;
+        this.tokens = this.burst;
+        this.refilledAt = System.nanoTime();
+        this.pausedUntil = refilledAt;
+    }
+    
+    /**
+     * Completes with true once the caller may send, or straight away with false if the permit is further
+     * than maxWaitMs away (nothing is reserved then)
+     */
+    public CompletableFuture<Boolean> acquire(long maxWaitMs) {
+        long generation;
+        long waitMs;
+        synchronized (this) {
+            generation = pauseGeneration;
+            waitMs = reserve(maxWaitMs);
+        }
+        if (waitMs < 0) return CompletableFuture.completedFuture(false);
+        if (waitMs == 0) return CompletableFuture.completedFuture(true);
+        return CompletableFuture.supplyAsync(() -> null, CompletableFuture.delayedExecutor(waitMs, TimeUnit.MILLISECONDS))
+            .thenCompose(ignored -> isCurrent(generation) ? CompletableFuture.completedFuture(true) : acquire(maxWaitMs));
+    }
+    
+    private synchronized boolean isCurrent(long generation) {
+        return generation == pauseGeneration;
+    }
+    
+    private synchronized long reserve(long maxWaitMs) {
+        long now = System.nanoTime();
+        if (now > refilledAt) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) / 1e9 * perSecond);
+            refilledAt = now;
+        }
+        long waitNanos = Math.max(0, refilledAt - now);
+        if (tokens < 1) {
+            waitNanos += (long) ((1 - tokens) / perSecond * 1e9);
+        }
+        long waitMs = TimeUnit.NANOSECONDS.toMillis(waitNanos + 999_999);
+        if (waitMs > maxWaitMs) return -1;
+        tokens -= 1;
+        return waitMs;
+    }
+    
+    /**
+     * Adapts to a response: 429 (or 503 with Retry-After) backs off, rate-limit headers set the rate
+     * or pause until the window resets, and any other success speeds back up
+     */
+    public void observe(int statusCode, HttpHeaders headers) {
+        long retryAfterMs = parseRetryAfter(headers.firstValue("retry-after").orElse(null));
+        if (statusCode == 429 || (statusCode == 503 && retryAfterMs >= 0)) {
+            limited(retryAfterMs >= 0 ? retryAfterMs : DEFAULT_PAUSE_MS);
+            return;
+        }
+        long remaining = parseLong(firstHeader(headers, REMAINING_HEADERS));
+        long resetMs = parseReset(firstHeader(headers, RESET_HEADERS));
+        if (remaining == 0 && resetMs > 0) {
+            pause(resetMs);
+        } else if (remaining > 0 && resetMs > 0) {
+            // Spread what is left of the window evenly over the rest of it
+            setRate(remaining * share / (resetMs / 1000.0));
+        } else if (statusCode >= 200 && statusCode < 300) {
+            // Additive increase: about 32 successes from the floor back to the ceiling
+            synchronized (this) {
+                perSecond = Math.min(maxPerSecond, perSecond + maxPerSecond / 32);
+            }
+        }
+    }
+    
+    private synchronized void limited(long pauseMs) {
+        // 429s for requests sent before the pause began belong to the same window and do not halve again
+        if (System.nanoTime() < pausedUntil) {
+            pause(pauseMs);
+            return;
+        }
+        perSecond = Math.max(minPerSecond, perSecond / 2);
+        pause(pauseMs);
+        System.err.println("Rate limited on " + name + ", pausing " + pauseMs + "ms at " +
+            String.format("%.2f", perSecond) + " requests/s");
+    }
+    
+    /**
+     * Stops handing out permits until pauseMs from now. Outstanding reservations are voided and their debt
+     * forgiven, since their holders reserve again once their wait is over
+     */
+    private synchronized void pause(long pauseMs) {
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pauseMs);
+        if (until > refilledAt) {
+            refilledAt = until;
+        }
+        if (until > pausedUntil) {
+            pausedUntil = until;
+        }
+        tokens = 0;
+        pauseGeneration++;
+    }
+    
+    private synchronized void setRate(double requestsPerSecond) {
+        perSecond = Math.max(minPerSecond, Math.min(maxPerSecond, requestsPerSecond));
+    }
+    
+    private static String firstHeader(HttpHeaders headers, String[] names) {
+        for (String header : names) {
+            String value = headers.firstValue(header).orElse(null);
+            if (value != null) return value;
+        }
+        return null;
+    }
+    
+    /**
+     * Retry-After in milliseconds, from delay-seconds or an HTTP date; -1 if absent or unreadable
+     */
+    static long parseRetryAfter(String value) {
+        if (value == null || value.trim().isEmpty()) return -1;
+        long seconds = parseLong(value);
+        if (seconds >= 0) return seconds * 1000;
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, at.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Time until the rate-limit window resets in milliseconds: seconds, an epoch timestamp in seconds,
+     * or a duration such as "1m30s" or "250ms"; -1 if absent or unreadable
+     */
+    static long parseReset(String value) {
+        if (value == null || value.trim().isEmpty()) return -1;
+        String trimmed = value.trim();
+        try {
+            double number = Double.parseDouble(trimmed);
+            if (number > 1e9) {
+                return Math.max(0, (long) (number * 1000) - System.currentTimeMillis());
+            }
+            return (long) (number * 1000);
+        } catch (NumberFormatException e) {
+            // Not a plain number, try a duration
+        }
+        Matcher matcher = DURATION_PART.matcher(trimmed);
+        double millis = 0;
+        int matchedUpTo = 0;
+        while (matcher.find() && matcher.start() == matchedUpTo) {
+            double amount = Double.parseDouble(matcher.group(1));
+            switch (matcher.group(2)) {
+                case "ms": millis += amount; break;
+                case "s": millis += amount * 1000; break;
+                case "m": millis += amount * 60_000; break;
+                default: millis += amount * 3_600_000;
+            }
+            matchedUpTo = matcher.end();
+        }
+        return matchedUpTo == trimmed.length() && matchedUpTo > 0 ? (long) millis : -1;
+    }
+    
+    private static long parseLong(String value) {
+        if (value == null) return -1;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
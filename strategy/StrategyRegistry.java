@@ -0,0 +1,132 @@
+package strategy;
+
+import config.DatabaseConfiguration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * The summarization strategies jobs can choose from, each created once and shared by the API and the worker.
+ * Every strategy sits behind its own bulkhead (STRATEGY_<NAME>_MAX_CONCURRENCY calls in flight,
+ * STRATEGY_<NAME>_MAX_QUEUE waiting), so one slow provider cannot take every worker. The bulkhead wraps
+ * the provider itself, beneath batching and long-document mode, so it counts provider calls, not documents.
+ */
+public class StrategyRegistry {
+    public static final String DEFAULT = "huggingface";
+    
+    private static StrategyRegistry instance;
+    private final Map<String, SummaryStrategy> strategies = new LinkedHashMap<>();
+    private final Map<String, SummaryStrategy> bounded = new LinkedHashMap<>();
+    
+    private StrategyRegistry() {
+        int workerInFlight = Math.max(1, DatabaseConfiguration.getIntEnv("WORKER_MAX_IN_FLIGHT", 32));
+        // Each document in long-document mode may have LONG_DOC_PARALLELISM chunk calls waiting for a slot
+        int modelQueue = MapReduceSummaryStrategy.isEnabled() ? workerInFlight * MapReduceSummaryStrategy.parallelism() : 8;
+        // By default as many calls as the worker keeps in flight, so the bulkhead only sheds load when set lower
+        register(DEFAULT, new HuggingFaceStrategy(), workerInFlight, modelQueue, model -> {
+            if (BatchingSummaryStrategy.isEnabled()) {
+                // Below long-document mode, so chunk summaries of long documents go to the model unbatched
+                model = new BatchingSummaryStrategy(model);
+            }
+            if (MapReduceSummaryStrategy.isEnabled()) {
+                model = new MapReduceSummaryStrategy(model);
+            }
+            return model;
+        });
+        // Runs on the calling thread in milliseconds, the limit only matters if callers multiply
+        register(ExtractiveSummaryStrategy.NAME, new ExtractiveSummaryStrategy(), 8, 64, UnaryOperator.identity());
+    }
+    
+    public static StrategyRegistry getInstance() {
+        if (instance == null) {
+            synchronized (StrategyRegistry.class) {
+                if (instance == null) {
+                    instance = new StrategyRegistry();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Registers the provider behind its bulkhead; decorate adds the layers that sit above the bulkhead
+     * and is applied to the unbounded variant as well
+     */
+    private void register(String name, SummaryStrategy provider, int defaultConcurrency, int defaultQueue,
+                          UnaryOperator<SummaryStrategy> decorate) {
+        String prefix = "STRATEGY_" + name.toUpperCase(Locale.ROOT) + "_";
+        Bulkhead bulkhead = new Bulkhead(name,
+            DatabaseConfiguration.getIntEnv(prefix + "MAX_CONCURRENCY", defaultConcurrency),
+            DatabaseConfiguration.getIntEnv(prefix + "MAX_QUEUE", defaultQueue));
+        strategies.put(name, decorate.apply(provider));
+        bounded.put(name, decorate.apply(new BulkheadStrategy(provider, bulkhead)));
+    }
+    
+    public Set<String> names() {
+        return Collections.unmodifiableSet(strategies.keySet());
+    }
+    
+    public boolean contains(String name) {
+        return name == null || name.trim().isEmpty() || strategies.containsKey(name.trim().toLowerCase(Locale.ROOT));
+    }
+    
+    /**
+     * Strategy name as stored on a job: null for the default, so its cache keys stay the ones generated
+     * before jobs could choose a strategy
+     */
+    public String jobStrategy(String name) {
+        if (name == null || name.trim().isEmpty()) return null;
+        String key = name.trim().toLowerCase(Locale.ROOT);
+        if (!strategies.containsKey(key)) {
+            throw new IllegalArgumentException("Unknown strategy: " + name + " (available: " + String.join(", ", names()) + ")");
+        }
+        return DEFAULT.equals(key) ? null : key;
+    }
+    
+    /**
+     * The named strategy (null for the default) behind its bulkhead
+     */
+    public SummaryStrategy get(String name) {
+        return lookup(bounded, name);
+    }
+    
+    /**
+     * The named strategy without its bulkhead, for fallback work that must never be shed
+     */
+    public SummaryStrategy unbounded(String name) {
+        return lookup(strategies, name);
+    }
+    
+    private SummaryStrategy lookup(Map<String, SummaryStrategy> map, String name) {
+        SummaryStrategy strategy = map.get(name == null ? DEFAULT : name.trim().toLowerCase(Locale.ROOT));
+        if (strategy == null) {
+            throw new IllegalArgumentException("Unknown strategy: " + name);
+        }
+        return strategy;
+    }
+    
+    private static class BulkheadStrategy implements SummaryStrategy {
+        private final SummaryStrategy delegate;
+        private final Bulkhead bulkhead;
+        
+        BulkheadStrategy(SummaryStrategy delegate, Bulkhead bulkhead) {
+            this.delegate = delegate;
+            this.bulkhead = bulkhead;
+        }
+        
+        @Override
+        public CompletableFuture<String> generateSummaryAsync(String content) {
+            return bulkhead.submit(() -> delegate.generateSummaryAsync(content));
+        }
+        
+        @Override
+        public CompletableFuture<String> generateSummaryAsync(String content, Consumer<String> onPartial) {
+            return bulkhead.submit(() -> delegate.generateSummaryAsync(content, onPartial));
+        }
+    }
+}
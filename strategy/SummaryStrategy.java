@@ -1,7 +1,46 @@
 package strategy;
 
+import util.FutureUtils;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Implementations override generateSummary or generateSummaryAsync(String) (or both); each defaults to the other.
+ */
 public interface SummaryStrategy {
     
-    String generateSummary(String content) throws Exception;
+    /**
+     * Blocking variant; the default waits for generateSummaryAsync and rethrows what it failed with
+     */
+    default String generateSummary(String content) throws Exception {
+        try {
+            return generateSummaryAsync(content).join();
+        } catch (CompletionException e) {
+            Throwable cause = FutureUtils.unwrap(e);
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+    
+    /**
+     * Non-blocking variant. Implementations backed by an async client should override this;
+     * the default just runs the blocking call on the common pool.
+     */
+    default CompletableFuture<String> generateSummaryAsync(String content) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return generateSummary(content);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+    
+    /**
+     * Like generateSummaryAsync, additionally passing the summary generated so far to onPartial while
+     * a streaming implementation receives it. Each call gets the whole text so far, not just the new part.
+     */
+    default CompletableFuture<String> generateSummaryAsync(String content, Consumer<String> onPartial) {
+        return generateSummaryAsync(content);
+    }
 }
-
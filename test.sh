@@ -0,0 +1,50 @@
+#!/bin/bash
+
+# Compiles the sources together with the checks under test/ and runs every *Check class.
+# The checks need neither MySQL nor Redis.
+
+LOMBOK_JAR=""
+if [ -f "lombok.jar" ]; then
+    LOMBOK_JAR="lombok.jar"
+elif [ -f ~/.m2/repository/org/projectlombok/lombok/*/lombok-*.jar ]; then
+    LOMBOK_JAR=$(ls ~/.m2/repository/org/projectlombok/lombok/*/lombok-*.jar | head -1)
+fi
+
+if [ -z "$LOMBOK_JAR" ] || [ ! -f "$LOMBOK_JAR" ]; then
+    echo "❌ Lombok not found! Run ./run.sh once or place lombok.jar in the project root"
+    exit 1
+fi
+
+OUT_DIR=$(mktemp -d)
+trap 'rm -rf "$OUT_DIR"' EXIT
+
+echo "Compiling..."
+javac -d "$OUT_DIR" -cp "$LOMBOK_JAR" -processor lombok.launch.AnnotationProcessorHider\$AnnotationProcessor \
+    config/*.java \
+    enums/*.java \
+    models/*.java \
+    strategy/*.java \
+    dao/*.java \
+    worker/*.java \
+    service/*.java \
+    api/*.java \
+    util/*.java \
+    Application.java \
+    $(find test -name '*.java')
+if [ $? -ne 0 ]; then
+    echo "❌ Compilation failed!"
+    exit 1
+fi
+
+FAILED=0
+for CHECK in $(cd test && find . -name '*Check.java' | sed 's|^\./||; s|\.java$||; s|/|.|g' | sort); do
+    if ! java -cp "$OUT_DIR" "$CHECK"; then
+        echo "❌ $CHECK failed"
+        FAILED=1
+    fi
+done
+
+if [ $FAILED -ne 0 ]; then
+    exit 1
+fi
+echo "✓ All checks passed"
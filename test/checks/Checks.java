@@ -0,0 +1,32 @@
+package checks;
+
+import java.util.Objects;
+
+/**
+ * Assertions for the plain-Java checks under test/, which run without a test framework (see test.sh).
+ * A failed check throws, so the check class exits non-zero.
+ */
+public final class Checks {
+    private static int passed;
+    
+    private Checks() {
+    }
+    
+    public static void equal(Object expected, Object actual, String what) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError(what + ": expected <" + expected + "> but was <" + actual + ">");
+        }
+        passed++;
+    }
+    
+    public static void isTrue(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+        passed++;
+    }
+    
+    public static void done(Class<?> check) {
+        System.out.println(check.getSimpleName() + ": " + passed + " checks passed");
+    }
+}
@@ -0,0 +1,78 @@
+package dao;
+
+import checks.Checks;
+import enums.JobStatus;
+import models.Job;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+public class EmbeddedJobLogCheck {
+    
+    public static void main(String[] args) throws IOException {
+        Path dataDir = Files.createTempDirectory("embedded-job-log-check");
+        try {
+            tornTail(dataDir);
+        } finally {
+            try (Stream<Path> files = Files.walk(dataDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+        Checks.done(EmbeddedJobLogCheck.class);
+    }
+    
+    private static void tornTail(Path dataDir) throws IOException {
+        EmbeddedJobLog log = new EmbeddedJobLog(dataDir, 0);
+        log.createJob(new Job("job-1", "user-1", "first input", false, null, JobStatus.QUEUED));
+        log.createJob(new Job("job-2", "user-1", "second input", false, null, JobStatus.QUEUED));
+        log.updateStatus("job-1", JobStatus.COMPLETED);
+        log.updateOutput("job-1", "first summary");
+        log.close();
+        Path logPath = log.getLogPath();
+        long intactLength = Files.size(logPath);
+        
+        // A record cut off mid-payload, as left by a crash during an append
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(logPath, StandardOpenOption.APPEND))) {
+            out.writeInt(100);
+            out.writeInt(12345);
+            out.write(new byte[] {3, 0, 0});
+        }
+        log = new EmbeddedJobLog(dataDir, 0);
+        Checks.equal(intactLength, Files.size(logPath), "torn record truncated");
+        Checks.equal(2, log.jobCount(), "jobs before the torn record replayed");
+        Checks.equal(JobStatus.COMPLETED, log.findJob("job-1").getStatus(), "status update replayed");
+        Checks.equal("first summary", log.findJob("job-1").getOutputContent(), "output replayed");
+        Checks.equal(JobStatus.QUEUED, log.findNextQueuedJob().getStatus(), "queued index rebuilt");
+        Checks.equal("job-2", log.findNextQueuedJob().getId(), "only the queued job is in the queued index");
+        
+        // Appends after the truncation land right after the last intact record
+        log.createJob(new Job("job-3", "user-1", "third input", false, null, JobStatus.QUEUED));
+        log.close();
+        long lengthWithThird = Files.size(logPath);
+        
+        // A complete frame whose checksum does not match its payload
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(logPath, StandardOpenOption.APPEND))) {
+            out.writeInt(4);
+            out.writeInt(0);
+            out.write(new byte[] {4, 1, 2, 3});
+        }
+        log = new EmbeddedJobLog(dataDir, 0);
+        Checks.equal(lengthWithThird, Files.size(logPath), "record with a bad checksum truncated");
+        Checks.equal(3, log.jobCount(), "job appended after a truncation survives");
+        Checks.isTrue(log.findJob("job-3") != null, "third job replayed");
+        
+        // A length prefix alone, torn before the checksum
+        log.close();
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(logPath, StandardOpenOption.APPEND))) {
+            out.writeShort(7);
+        }
+        log = new EmbeddedJobLog(dataDir, 0);
+        Checks.equal(lengthWithThird, Files.size(logPath), "partial length prefix truncated");
+        Checks.equal(3, log.jobCount(), "jobs intact after a partial length prefix");
+        log.close();
+    }
+}
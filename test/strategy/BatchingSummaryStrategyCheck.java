@@ -0,0 +1,30 @@
+package strategy;
+
+import checks.Checks;
+import java.util.Map;
+
+public class BatchingSummaryStrategyCheck {
+    
+    public static void main(String[] args) {
+        Map<Integer, String> summaries = BatchingSummaryStrategy.parseReply("[1] First text.\n[2]: Second\ncontinued here\n\n[3] Third");
+        Checks.equal(3, summaries.size(), "numbered lines");
+        Checks.equal("First text.", summaries.get(1), "plain line");
+        Checks.equal("Second continued here", summaries.get(2), "colon and continuation line");
+        Checks.equal("Third", summaries.get(3), "last line");
+        
+        summaries = BatchingSummaryStrategy.parseReply("Here are the summaries:\r\n  [2] Two\r\n[1]One");
+        Checks.equal(2, summaries.size(), "preamble before the first number is ignored");
+        Checks.equal("Two", summaries.get(2), "indented line with CRLF");
+        Checks.equal("One", summaries.get(1), "no space after the number");
+        
+        summaries = BatchingSummaryStrategy.parseReply("[1] A\n[3] C");
+        Checks.isTrue(!summaries.containsKey(2), "missing number stays missing");
+        
+        summaries = BatchingSummaryStrategy.parseReply("[12345] too long\n[1] A\n[1] again");
+        Checks.equal(1, summaries.size(), "five-digit number is not an item");
+        Checks.equal("again", summaries.get(1), "repeated number keeps the last line");
+        
+        Checks.isTrue(BatchingSummaryStrategy.parseReply("no numbers at all").isEmpty(), "reply without numbers");
+        Checks.done(BatchingSummaryStrategyCheck.class);
+    }
+}
@@ -0,0 +1,48 @@
+package strategy;
+
+import checks.Checks;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+public class RateLimiterCheck {
+    
+    public static void main(String[] args) {
+        retryAfter();
+        reset();
+        Checks.done(RateLimiterCheck.class);
+    }
+    
+    private static void retryAfter() {
+        Checks.equal(120_000L, RateLimiter.parseRetryAfter("120"), "delay-seconds");
+        Checks.equal(5_000L, RateLimiter.parseRetryAfter(" 5 "), "delay-seconds with whitespace");
+        Checks.equal(0L, RateLimiter.parseRetryAfter("0"), "zero delay");
+        Checks.equal(-1L, RateLimiter.parseRetryAfter(null), "absent header");
+        Checks.equal(-1L, RateLimiter.parseRetryAfter(""), "empty header");
+        Checks.equal(-1L, RateLimiter.parseRetryAfter("soon"), "unreadable header");
+        
+        String inThirtySeconds = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(30));
+        long untilDate = RateLimiter.parseRetryAfter(inThirtySeconds);
+        Checks.isTrue(untilDate > 28_000 && untilDate <= 30_000, "HTTP date 30s ahead gave " + untilDate);
+        String past = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).minusMinutes(5));
+        Checks.equal(0L, RateLimiter.parseRetryAfter(past), "HTTP date in the past");
+    }
+    
+    private static void reset() {
+        Checks.equal(2_000L, RateLimiter.parseReset("2"), "seconds");
+        Checks.equal(500L, RateLimiter.parseReset("0.5"), "fractional seconds");
+        Checks.equal(90_000L, RateLimiter.parseReset("1m30s"), "minutes and seconds");
+        Checks.equal(250L, RateLimiter.parseReset("250ms"), "milliseconds");
+        Checks.equal(3_600_000L, RateLimiter.parseReset("1h"), "hours");
+        Checks.equal(1_500L, RateLimiter.parseReset("1.5s"), "fractional duration");
+        Checks.equal(-1L, RateLimiter.parseReset("1m30x"), "trailing garbage");
+        Checks.equal(-1L, RateLimiter.parseReset("x1m"), "leading garbage");
+        Checks.equal(-1L, RateLimiter.parseReset(""), "empty header");
+        Checks.equal(-1L, RateLimiter.parseReset(null), "absent header");
+        
+        long epochSeconds = System.currentTimeMillis() / 1000 + 10;
+        long untilEpoch = RateLimiter.parseReset(Long.toString(epochSeconds));
+        Checks.isTrue(untilEpoch > 8_000 && untilEpoch <= 10_000, "epoch timestamp 10s ahead gave " + untilEpoch);
+        Checks.equal(0L, RateLimiter.parseReset(Long.toString(epochSeconds - 100)), "epoch timestamp in the past");
+    }
+}
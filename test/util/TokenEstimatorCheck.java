@@ -0,0 +1,84 @@
+package util;
+
+import checks.Checks;
+
+public class TokenEstimatorCheck {
+    private static final String MARKER = "\n[...]\n";
+    
+    public static void main(String[] args) {
+        estimate();
+        prefixEnd();
+        trimHeadAndTail();
+        Checks.done(TokenEstimatorCheck.class);
+    }
+    
+    private static void estimate() {
+        Checks.equal(0, TokenEstimator.estimate(null), "null text");
+        Checks.equal(2, TokenEstimator.estimate("hello"), "five letters");
+        Checks.equal(4, TokenEstimator.estimate("hello world"), "whitespace is free");
+        Checks.equal(2, TokenEstimator.estimate("2024"), "four digits");
+        Checks.equal(3, TokenEstimator.estimate("a.b"), "punctuation stands alone");
+        Checks.equal(2, TokenEstimator.estimate("éé"), "one token per non-ASCII character");
+    }
+    
+    private static void prefixEnd() {
+        String text = "hello world again";
+        Checks.equal(12, TokenEstimator.prefixEnd(text, 0, 4), "cut after the last run that fits, free whitespace included");
+        Checks.equal(text.length(), TokenEstimator.prefixEnd(text, 0, 100), "everything fits");
+        Checks.equal(17, TokenEstimator.prefixEnd(text, 12, 2), "from an offset");
+        Checks.equal(1, TokenEstimator.prefixEnd(text, 0, 0), "no budget still moves forward");
+        
+        String longWord = repeat('a', 40);
+        Checks.equal(3, TokenEstimator.prefixEnd(longWord, 0, 3), "a run over the budget is cut inside");
+        int start = 0;
+        while (start < longWord.length()) {
+            int end = TokenEstimator.prefixEnd(longWord, start, 3);
+            Checks.isTrue(end > start && end - start <= 12, "piece " + start + ".." + end + " progresses within the budget");
+            start = end;
+        }
+    }
+    
+    private static void trimHeadAndTail() {
+        Checks.equal("short text", TokenEstimator.trimHeadAndTail("short text", 100, 0.7, MARKER), "text within budget is unchanged");
+        
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append(word(i)).append(i % 10 == 9 ? ". " : " ");
+        }
+        String text = builder.toString().trim();
+        String trimmed = TokenEstimator.trimHeadAndTail(text, 200, 0.7, MARKER);
+        Checks.isTrue(TokenEstimator.estimate(trimmed) <= 200, "trimmed text fits the budget");
+        int markerAt = trimmed.indexOf(MARKER);
+        Checks.isTrue(markerAt > 0, "marker between head and tail");
+        String head = trimmed.substring(0, markerAt);
+        String tail = trimmed.substring(markerAt + MARKER.length());
+        Checks.isTrue(text.startsWith(head), "head is the beginning of the text");
+        Checks.isTrue(text.endsWith(tail), "tail is the end of the text");
+        Checks.isTrue(Character.isLetterOrDigit(tail.charAt(0)), "tail starts at a word");
+        int headWords = head.split("\\s+").length;
+        int tailWords = tail.split("\\s+").length;
+        Checks.isTrue(text.startsWith(head + " ") || text.startsWith(head + "."), "head ends between words");
+        Checks.isTrue(text.endsWith(" " + tail), "tail starts between words");
+        Checks.isTrue(headWords > tailWords, "head gets the larger share");
+        
+        Checks.equal("", TokenEstimator.trimHeadAndTail(text, 1, 0.7, MARKER), "budget smaller than the marker");
+    }
+    
+    // Letter-only words, so every word is a single run
+    private static String word(int i) {
+        StringBuilder word = new StringBuilder("w");
+        do {
+            word.append((char) ('a' + i % 26));
+            i /= 26;
+        } while (i > 0);
+        return word.toString();
+    }
+    
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
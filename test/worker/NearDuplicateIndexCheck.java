@@ -0,0 +1,81 @@
+package worker;
+
+import checks.Checks;
+import java.util.Random;
+
+public class NearDuplicateIndexCheck {
+    private static final long FINGERPRINT = 0x0123456789ABCDEFL;
+    
+    public static void main(String[] args) {
+        banding();
+        removal();
+        eviction();
+        Checks.done(NearDuplicateIndexCheck.class);
+    }
+    
+    private static void banding() {
+        // Distance 3 means four 16-bit bands
+        NearDuplicateIndex index = new NearDuplicateIndex(true, 3, 0, 100);
+        index.add(FINGERPRINT, "a");
+        Checks.equal(4, index.bucketCount(), "one bucket per band");
+        Checks.equal("a", index.findNearDuplicate(FINGERPRINT), "exact match");
+        Checks.equal("a", index.findNearDuplicate(flip(FINGERPRINT, 0, 16, 32)), "three bands differ, the fourth matches");
+        Checks.equal("a", index.findNearDuplicate(flip(FINGERPRINT, 0, 1, 2)), "three bits within one band");
+        Checks.equal(null, index.findNearDuplicate(flip(FINGERPRINT, 0, 16, 32, 48)), "one bit in every band");
+        Checks.equal(null, index.findNearDuplicate(flip(FINGERPRINT, 0, 1, 2, 3)), "four bits within one band");
+        
+        index.add(flip(FINGERPRINT, 5), "b");
+        Checks.equal("b", index.findNearDuplicate(flip(FINGERPRINT, 5, 20)), "closest entry wins");
+        Checks.equal("a", index.findNearDuplicate(FINGERPRINT), "exact match beats a near one");
+    }
+    
+    private static void removal() {
+        NearDuplicateIndex index = new NearDuplicateIndex(true, 3, 0, 100);
+        index.add(FINGERPRINT, "a");
+        index.add(flip(FINGERPRINT, 0), "b");
+        Checks.equal(5, index.bucketCount(), "shared buckets for the bands that match");
+        index.remove("a");
+        Checks.equal("b", index.findNearDuplicate(FINGERPRINT), "other entry in the shared buckets stays");
+        Checks.equal(4, index.bucketCount(), "only the bucket that held just the removed entry goes");
+        index.remove("b");
+        Checks.equal(null, index.findNearDuplicate(FINGERPRINT), "removed entries are not found");
+        Checks.equal(0, index.bucketCount(), "no empty buckets left behind");
+        index.remove("missing");
+        
+        index.add(FINGERPRINT, "a");
+        index.add(~FINGERPRINT, "a");
+        Checks.equal(null, index.findNearDuplicate(FINGERPRINT), "replaced fingerprint is not found");
+        Checks.equal("a", index.findNearDuplicate(~FINGERPRINT), "new fingerprint is found");
+        Checks.equal(4, index.bucketCount(), "replaced fingerprint's buckets are dropped");
+        index.add(~FINGERPRINT, "a");
+        Checks.equal(4, index.bucketCount(), "re-adding the same fingerprint does not index it twice");
+    }
+    
+    private static void eviction() {
+        NearDuplicateIndex index = new NearDuplicateIndex(true, 3, 0, 100);
+        Random random = new Random(42);
+        long[] fingerprints = new long[150];
+        for (int i = 0; i < fingerprints.length; i++) {
+            fingerprints[i] = random.nextLong();
+            index.add(fingerprints[i], "key-" + i);
+        }
+        for (int i = 0; i < 50; i++) {
+            Checks.equal(null, index.findNearDuplicate(fingerprints[i]), "oldest key-" + i + " evicted");
+        }
+        for (int i = 50; i < fingerprints.length; i++) {
+            Checks.equal("key-" + i, index.findNearDuplicate(fingerprints[i]), "newest key-" + i + " kept");
+        }
+        Checks.isTrue(index.bucketCount() <= 4 * 100, "evicted entries are unindexed");
+        for (int i = 50; i < fingerprints.length; i++) {
+            index.remove("key-" + i);
+        }
+        Checks.equal(0, index.bucketCount(), "nothing left after removing the rest");
+    }
+    
+    private static long flip(long fingerprint, int... bits) {
+        for (int bit : bits) {
+            fingerprint ^= 1L << bit;
+        }
+        return fingerprint;
+    }
+}
@@ -0,0 +1,94 @@
+package worker;
+
+import checks.Checks;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class OffHeapSummaryStoreCheck {
+    
+    public static void main(String[] args) {
+        slabRecycling();
+        backwardShiftDelete();
+        Checks.done(OffHeapSummaryStoreCheck.class);
+    }
+    
+    private static void slabRecycling() {
+        OffHeapSummaryStore store = new OffHeapSummaryStore(4096, 3);
+        Random random = new Random(7);
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            // Random letters barely compress, so each record takes about 200 bytes
+            String value = randomText(random, 200);
+            values.add(value);
+            store.put("key-" + i, value);
+        }
+        Checks.equal(null, store.get("key-0"), "entries of a recycled slab are dropped");
+        Checks.equal(values.get(199), store.get("key-199"), "newest entry kept");
+        int present = 0;
+        for (int i = 0; i < values.size(); i++) {
+            String stored = store.get("key-" + i);
+            if (stored != null) {
+                Checks.equal(values.get(i), stored, "kept key-" + i + " intact");
+                present++;
+            } else {
+                Checks.isTrue(present == 0, "key-" + i + " dropped although an older entry was kept");
+            }
+        }
+        Checks.equal(present, store.size(), "size counts only the entries kept");
+        Checks.isTrue(present > 20 && present <= 3 * 4096 / 200, "at most three slabs of entries: " + present);
+        
+        store.remove("key-199");
+        store.put("key-200", values.get(0));
+        Checks.equal(null, store.get("key-199"), "removed entry stays gone after more writes");
+        Checks.equal(values.get(0), store.get("key-200"), "writes continue after recycling");
+    }
+    
+    private static void backwardShiftDelete() {
+        // Enough keys for long probe runs in the 65536-slot index
+        OffHeapSummaryStore store = new OffHeapSummaryStore(1 << 22, 4);
+        Map<String, String> expected = new HashMap<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 30000; i++) {
+            String key = "key-" + i;
+            String value = "summary " + i;
+            store.put(key, value);
+            expected.put(key, value);
+        }
+        for (int round = 0; round < 60000; round++) {
+            String key = "key-" + random.nextInt(40000);
+            if (random.nextBoolean()) {
+                store.remove(key);
+                expected.remove(key);
+            } else {
+                String value = "summary " + round;
+                store.put(key, value);
+                expected.put(key, value);
+            }
+        }
+        Checks.equal(expected.size(), store.size(), "size after removals");
+        int mismatches = 0;
+        for (int i = 0; i < 40000; i++) {
+            String key = "key-" + i;
+            if (!java.util.Objects.equals(expected.get(key), store.get(key))) {
+                mismatches++;
+            }
+        }
+        Checks.equal(0, mismatches, "every key still found (or absent) after backward-shift deletes");
+        for (String key : new ArrayList<>(expected.keySet())) {
+            store.remove(key);
+        }
+        Checks.equal(0, store.size(), "empty after removing every key");
+        Checks.equal(null, store.get("key-1"), "removed key not found");
+    }
+    
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append((char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+}
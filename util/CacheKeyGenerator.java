@@ -1,29 +1,271 @@
 package util;
 
+import config.DatabaseConfiguration;
+import models.Job;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 public class CacheKeyGenerator {
     private static final String CACHE_PREFIX = "content:";
     private static final String URL_PREFIX = "url:";
     private static final String TEXT_PREFIX = "text:";
+    private static final String CHUNK_PREFIX = "chunk:";
+    
+    private static final String MD5 = "md5";
+    private static final String MURMUR3 = "murmur3";
+    
+    // Chunk size for streaming UTF-8 bytes. flush() fires at position > BUFFER_SIZE - 4 (no room left for the
+    // longest UTF-8 sequence), usually mid Murmur3 block: it hashes the whole 16-byte blocks and carries the
+    // remaining bytes to the front of the buffer, where the next bytes complete their block
+    private static final int BUFFER_SIZE = 8192;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    private static final boolean USE_MURMUR3 =
+            MURMUR3.equalsIgnoreCase(DatabaseConfiguration.getEnv("CACHE_KEY_HASH", MD5));
+    
+    private static final ThreadLocal<HashState> STATE = ThreadLocal.withInitial(HashState::new);
     
     /**
      * Generates a cache key for content based on the input text and whether it's a URL
      */
     public static String generate(String text, boolean isUrl) {
+        return generate(text, isUrl, null);
+    }
+    
+    /**
+     * Cache key for the summary a given strategy produces; null is the default model strategy, whose
+     * keys are the ones generated before jobs could choose a strategy
+     */
+    public static String generate(String text, boolean isUrl, String strategy) {
+        HashState state = STATE.get();
         try {
-            String input = (isUrl ? URL_PREFIX : TEXT_PREFIX) + text;
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] hashBytes = md.digest(input.getBytes("UTF-8"));
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
-            }
-            return CACHE_PREFIX + sb.toString();
+            state.reset();
+            if (strategy != null) {
+                state.update(strategy);
+                state.update(":");
+            }
+            state.update(isUrl ? URL_PREFIX : TEXT_PREFIX);
+            state.update(text);
+            return CACHE_PREFIX + state.finishHex();
         } catch (Exception e) {
             // Fallback to simple key
-            return CACHE_PREFIX + (isUrl ? URL_PREFIX : TEXT_PREFIX) + text.hashCode();
+            return CACHE_PREFIX + (strategy != null ? strategy + ":" : "") + (isUrl ? URL_PREFIX : TEXT_PREFIX) + text.hashCode();
+        }
+    }
+    
+    /**
+     * Cache key for the summary of one chunk of a long document, shared by every document containing that exact chunk
+     */
+    public static String forChunk(String chunk) {
+        HashState state = STATE.get();
+        try {
+            state.reset();
+            state.update(chunk);
+            return CHUNK_PREFIX + state.finishHex();
+        } catch (Exception e) {
+            return CHUNK_PREFIX + chunk.hashCode();
+        }
+    }
+    
+    /**
+     * Returns the cache key stored on the job, computing and storing it for jobs created before keys were persisted
+     */
+    public static String forJob(Job job) {
+        String cacheKey = job.getCacheKey();
+        if (cacheKey == null) {
+            cacheKey = generate(job.getInputContent(), job.isUrl(), job.getStrategy());
+            job.setCacheKey(cacheKey);
+        }
+        return cacheKey;
+    }
+    
+    /**
+     * Per-thread hashing state: a reused digest (or Murmur3 accumulator) and the byte
+     * buffer the content is UTF-8 encoded into chunk by chunk, so the input is never copied
+     */
+    private static class HashState {
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final char[] hexChars = new char[32];
+        private final MessageDigest md5;
+        private int position;
+        private long h1;
+        private long h2;
+        private long totalLength;
+        
+        HashState() {
+            MessageDigest digest = null;
+            if (!USE_MURMUR3) {
+                try {
+                    digest = MessageDigest.getInstance("MD5");
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException("MD5 not available", e);
+                }
+            }
+            this.md5 = digest;
+        }
+        
+        void reset() {
+            position = 0;
+            h1 = 0;
+            h2 = 0;
+            totalLength = 0;
+            if (md5 != null) {
+                md5.reset();
+            }
+        }
+        
+        /**
+         * Encodes the string as UTF-8 straight into the buffer, flushing whenever it fills up
+         */
+        void update(String s) {
+            int length = s.length();
+            for (int i = 0; i < length; i++) {
+                if (position > BUFFER_SIZE - 4) {
+                    flush();
+                }
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    buffer[position++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[position++] = (byte) (0xC0 | (c >> 6));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    buffer[position++] = (byte) (0xF0 | (cp >> 18));
+                    buffer[position++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (cp & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // Unpaired surrogate - encoded as '?' just like String.getBytes(UTF_8)
+                    buffer[position++] = (byte) '?';
+                } else {
+                    buffer[position++] = (byte) (0xE0 | (c >> 12));
+                    buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+        
+        private void flush() {
+            if (md5 != null) {
+                md5.update(buffer, 0, position);
+                position = 0;
+                return;
+            }
+            int blocks = position >>> 4;
+            for (int i = 0; i < blocks; i++) {
+                murmurBlock(i << 4);
+            }
+            int consumed = blocks << 4;
+            totalLength += consumed;
+            int remaining = position - consumed;
+            System.arraycopy(buffer, consumed, buffer, 0, remaining);
+            position = remaining;
+        }
+        
+        String finishHex() {
+            if (md5 != null) {
+                md5.update(buffer, 0, position);
+                position = 0;
+                byte[] hash = md5.digest();
+                for (int i = 0; i < hash.length; i++) {
+                    hexChars[i << 1] = HEX[(hash[i] >> 4) & 0xF];
+                    hexChars[(i << 1) + 1] = HEX[hash[i] & 0xF];
+                }
+                return new String(hexChars);
+            }
+            flush();
+            murmurFinish();
+            writeHex(h1, 0);
+            writeHex(h2, 16);
+            return new String(hexChars);
+        }
+        
+        private void writeHex(long value, int offset) {
+            for (int i = 15; i >= 0; i--) {
+                hexChars[offset + i] = HEX[(int) (value & 0xF)];
+                value >>>= 4;
+            }
+        }
+        
+        // MurmurHash3 x64 128-bit, seed 0
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+        
+        private void murmurBlock(int offset) {
+            long k1 = getLong(offset);
+            long k2 = getLong(offset + 8);
+            
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        
+        private void murmurFinish() {
+            // After flush() fewer than 16 bytes remain in the buffer
+            long k1 = 0;
+            long k2 = 0;
+            for (int i = position - 1; i >= 8; i--) {
+                k2 = (k2 << 8) | (buffer[i] & 0xFFL);
+            }
+            for (int i = Math.min(position, 8) - 1; i >= 0; i--) {
+                k1 = (k1 << 8) | (buffer[i] & 0xFFL);
+            }
+            if (position > 8) {
+                k2 *= C2;
+                k2 = Long.rotateLeft(k2, 33);
+                k2 *= C1;
+                h2 ^= k2;
+            }
+            if (position > 0) {
+                k1 *= C1;
+                k1 = Long.rotateLeft(k1, 31);
+                k1 *= C2;
+                h1 ^= k1;
+            }
+            totalLength += position;
+            position = 0;
+            
+            h1 ^= totalLength;
+            h2 ^= totalLength;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+        }
+        
+        private long getLong(int offset) {
+            return (buffer[offset] & 0xFFL)
+                    | (buffer[offset + 1] & 0xFFL) << 8
+                    | (buffer[offset + 2] & 0xFFL) << 16
+                    | (buffer[offset + 3] & 0xFFL) << 24
+                    | (buffer[offset + 4] & 0xFFL) << 32
+                    | (buffer[offset + 5] & 0xFFL) << 40
+                    | (buffer[offset + 6] & 0xFFL) << 48
+                    | (buffer[offset + 7] & 0xFFL) << 56;
+        }
+        
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
         }
     }
 }
-
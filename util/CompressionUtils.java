@@ -0,0 +1,54 @@
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class CompressionUtils {
+    private static final int CHUNK_SIZE = 8192;
+    
+    /**
+     * Deflate-compresses the UTF-8 bytes of a string
+     */
+    public static byte[] compress(String text) {
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 2));
+            byte[] chunk = new byte[CHUNK_SIZE];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(chunk);
+                out.write(chunk, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    /**
+     * Inflates data produced by compress back into a string
+     */
+    public static String decompress(byte[] data) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] chunk = new byte[CHUNK_SIZE];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(chunk);
+                if (length == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated compressed data");
+                }
+                out.write(chunk, 0, length);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package util;
+
+import java.util.concurrent.CompletionException;
+
+public class FutureUtils {
+    
+    /**
+     * The failure behind a CompletionException, as join() and dependent stages wrap the original in one
+     */
+    public static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
@@ -1,16 +1,67 @@
 package util;
 
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Extracts readable text from HTML in one pass over the characters: tags are skipped as they are read,
+ * script/style (and other non-rendered) element bodies are jumped over, entities are decoded through a
+ * lookup table, and whitespace is collapsed on output. Every character is looked at a bounded number of
+ * times, so time is linear in the page size and the only sizeable allocation is the output.
+ */
 public class HtmlContentExtractor {
     
-    // Patterns to remove unwanted HTML elements
-    private static final Pattern SCRIPT_PATTERN = Pattern.compile("<script[^>]*>.*?</script>", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-    private static final Pattern STYLE_PATTERN = Pattern.compile("<style[^>]*>.*?</style>", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-    private static final Pattern HTML_TAG_PATTERN = Pattern.compile("<[^>]+>");
-    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
-    private static final Pattern HTML_ENTITY_PATTERN = Pattern.compile("&[a-zA-Z]+;");
+    // Elements whose content is never rendered as text
+    private static final String[] SKIPPED_ELEMENTS = {"script", "style", "noscript", "template", "title", "svg"};
+    // Inline elements join the text around them; any other tag separates words
+    private static final String[] INLINE_ELEMENTS = {"a", "abbr", "b", "bdi", "bdo", "cite", "code", "data", "dfn", "em",
+        "font", "i", "kbd", "mark", "q", "s", "samp", "small", "span", "strong", "sub", "sup", "time", "u", "var", "wbr"};
+    // Longest entity name in the table, so a stray '&' never scans far
+    private static final int MAX_ENTITY_LENGTH = 8;
+    private static final Map<String, String> ENTITIES = new HashMap<>();
+    
+    static {
+        ENTITIES.put("nbsp", " ");
+        ENTITIES.put("amp", "&");
+        ENTITIES.put("lt", "<");
+        ENTITIES.put("gt", ">");
+        ENTITIES.put("quot", "\"");
+        ENTITIES.put("apos", "'");
+        ENTITIES.put("lsquo", "‘");
+        ENTITIES.put("rsquo", "’");
+        ENTITIES.put("ldquo", "“");
+        ENTITIES.put("rdquo", "”");
+        ENTITIES.put("laquo", "«");
+        ENTITIES.put("raquo", "»");
+        ENTITIES.put("mdash", "—");
+        ENTITIES.put("ndash", "–");
+        ENTITIES.put("hellip", "...");
+        ENTITIES.put("bull", "•");
+        ENTITIES.put("middot", "·");
+        ENTITIES.put("shy", "");
+        ENTITIES.put("copy", "©");
+        ENTITIES.put("reg", "®");
+        ENTITIES.put("trade", "™");
+        ENTITIES.put("deg", "°");
+        ENTITIES.put("times", "×");
+        ENTITIES.put("euro", "€");
+        ENTITIES.put("pound", "£");
+        ENTITIES.put("yen", "¥");
+        ENTITIES.put("cent", "¢");
+        ENTITIES.put("aacute", "á");
+        ENTITIES.put("agrave", "à");
+        ENTITIES.put("auml", "ä");
+        ENTITIES.put("ccedil", "ç");
+        ENTITIES.put("eacute", "é");
+        ENTITIES.put("egrave", "è");
+        ENTITIES.put("iacute", "í");
+        ENTITIES.put("ntilde", "ñ");
+        ENTITIES.put("oacute", "ó");
+        ENTITIES.put("ouml", "ö");
+        ENTITIES.put("uacute", "ú");
+        ENTITIES.put("uuml", "ü");
+        ENTITIES.put("szlig", "ß");
+    }
     
     /**
      * Extracts readable text content from HTML
@@ -19,132 +70,225 @@ public class HtmlContentExtractor {
         if (html == null || html.isEmpty()) {
             return "";
         }
+        return new Extraction(html, Integer.MAX_VALUE).run();
+    }
+    
+    /**
+     * Limits the extracted text to a maximum length to avoid token limits
+     */
+    public static String extractTextWithLimit(String html, int maxLength) {
+        if (html == null || html.isEmpty()) {
+            return "";
+        }
+        // Stop reading the page once there is more text than can be kept
+        String text = new Extraction(html, maxLength + 1).run();
+        if (text.length() > maxLength) {
+            text = text.substring(0, maxLength);
+            // Try to cut at a word boundary
+            int lastSpace = text.lastIndexOf(' ');
+            if (lastSpace > maxLength * 0.9) {
+                text = text.substring(0, lastSpace);
+            }
+            text += "...";
+        }
+        return text;
+    }
+    
+    private static class Extraction {
+        private final String html;
+        private final int length;
+        private final int maxOutput;
+        private final StringBuilder out;
+        // A separator is owed before the next visible character
+        private boolean pendingSpace;
         
-        // Remove script tags
-        html = SCRIPT_PATTERN.matcher(html).replaceAll("");
-        
-        // Remove style tags
-        html = STYLE_PATTERN.matcher(html).replaceAll("");
-        
-        // Remove HTML comments
-        html = html.replaceAll("<!--.*?-->", "");
-        
-        // Extract text from common content tags (p, div, article, section, h1-h6, li, etc.)
-        StringBuilder textBuilder = new StringBuilder();
-        
-        // Extract from paragraph tags
-        extractFromTag(html, "p", textBuilder);
-        extractFromTag(html, "div", textBuilder);
-        extractFromTag(html, "article", textBuilder);
-        extractFromTag(html, "section", textBuilder);
-        extractFromTag(html, "main", textBuilder);
-        extractFromTag(html, "h1", textBuilder);
-        extractFromTag(html, "h2", textBuilder);
-        extractFromTag(html, "h3", textBuilder);
-        extractFromTag(html, "h4", textBuilder);
-        extractFromTag(html, "h5", textBuilder);
-        extractFromTag(html, "h6", textBuilder);
-        extractFromTag(html, "li", textBuilder);
-        extractFromTag(html, "span", textBuilder);
-        
-        String text = textBuilder.toString();
+        Extraction(String html, int maxOutput) {
+            this.html = html;
+            this.length = html.length();
+            this.maxOutput = maxOutput;
+            this.out = new StringBuilder(Math.min(length, maxOutput) / 2 + 16);
+        }
         
-        // If no content found in specific tags, extract all text
-        if (text.trim().isEmpty()) {
-            text = html;
+        String run() {
+            int i = 0;
+            while (i < length && out.length() < maxOutput) {
+                char c = html.charAt(i);
+                if (c == '<') {
+                    i = markup(i);
+                } else if (c == '&') {
+                    i = entity(i);
+                } else {
+                    emit(c);
+                    i++;
+                }
+            }
+            return out.toString();
         }
         
-        // Remove all remaining HTML tags
-        text = HTML_TAG_PATTERN.matcher(text).replaceAll(" ");
+        /**
+         * Consumes the markup starting at '<' and returns the index after it; a '<' that starts no markup is text
+         */
+        private int markup(int start) {
+            int next = start + 1;
+            if (next >= length) {
+                emit('<');
+                return next;
+            }
+            char c = html.charAt(next);
+            if (c == '!') {
+                if (html.startsWith("--", next + 1)) {
+                    int end = html.indexOf("-->", next + 3);
+                    return end < 0 ? length : end + 3;
+                }
+                // Doctype or CDATA section
+                return skipPast('>', next);
+            }
+            if (c == '?') {
+                return skipPast('>', next);
+            }
+            boolean closing = c == '/';
+            int nameStart = closing ? next + 1 : next;
+            if (nameStart >= length || !isAsciiLetter(html.charAt(nameStart))) {
+                emit('<');
+                return next;
+            }
+            int nameEnd = nameStart;
+            while (nameEnd < length && isNameChar(html.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            int tagEnd = tagEnd(nameEnd);
+            
+            if (!isOneOf(nameStart, nameEnd, INLINE_ELEMENTS)) {
+                pendingSpace = true;
+            }
+            if (!closing && isOneOf(nameStart, nameEnd, SKIPPED_ELEMENTS) && html.charAt(tagEnd - 1) != '/') {
+                return skipElementBody(tagEnd, nameStart, nameEnd - nameStart);
+            }
+            return tagEnd;
+        }
         
-        // Decode common HTML entities
-        text = decodeHtmlEntities(text);
+        /**
+         * Index after the '>' closing a tag, skipping over quoted attribute values that may contain '>'.
+         * Only a quote right after '=' opens a value, so a stray quote cannot swallow the rest of the page.
+         */
+        private int tagEnd(int from) {
+            char quote = 0;
+            char previous = 0;
+            for (int i = from; i < length; i++) {
+                char c = html.charAt(i);
+                if (quote != 0) {
+                    if (c == quote) quote = 0;
+                    continue;
+                }
+                if ((c == '"' || c == '\'') && previous == '=') {
+                    quote = c;
+                } else if (c == '>') {
+                    return i + 1;
+                }
+                if (!Character.isWhitespace(c)) {
+                    previous = c;
+                }
+            }
+            return length;
+        }
         
-        // Normalize whitespace
-        text = WHITESPACE_PATTERN.matcher(text).replaceAll(" ");
+        /**
+         * Index after the end tag matching the element whose name is at html[nameStart, nameStart + nameLength)
+         */
+        private int skipElementBody(int from, int nameStart, int nameLength) {
+            int i = from;
+            while ((i = html.indexOf("</", i)) >= 0) {
+                int name = i + 2;
+                int afterName = name + nameLength;
+                if (html.regionMatches(true, name, html, nameStart, nameLength)
+                        && (afterName >= length || !isNameChar(html.charAt(afterName)))) {
+                    return tagEnd(afterName);
+                }
+                i = name;
+            }
+            return length;
+        }
         
-        // Trim and return
-        return text.trim();
-    }
-    
-    private static void extractFromTag(String html, String tagName, StringBuilder builder) {
-        Pattern pattern = Pattern.compile("<" + tagName + "[^>]*>(.*?)</" + tagName + ">", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-        Matcher matcher = pattern.matcher(html);
-        while (matcher.find()) {
-            String content = matcher.group(1);
-            // Remove nested tags
-            content = HTML_TAG_PATTERN.matcher(content).replaceAll(" ");
-            content = decodeHtmlEntities(content);
-            content = WHITESPACE_PATTERN.matcher(content).replaceAll(" ").trim();
-            if (!content.isEmpty()) {
-                if (builder.length() > 0) {
-                    builder.append(" ");
+        /**
+         * Decodes the entity at '&' and returns the index after it; an unknown or malformed entity is text
+         */
+        private int entity(int start) {
+            int i = start + 1;
+            if (i < length && html.charAt(i) == '#') {
+                i++;
+                boolean hex = i < length && (html.charAt(i) == 'x' || html.charAt(i) == 'X');
+                if (hex) i++;
+                int digitsStart = i;
+                int code = 0;
+                while (i < length && i - digitsStart < 7) {
+                    int digit = Character.digit(html.charAt(i), hex ? 16 : 10);
+                    if (digit < 0) break;
+                    code = code * (hex ? 16 : 10) + digit;
+                    i++;
+                }
+                if (i > digitsStart && i < length && html.charAt(i) == ';' && Character.isValidCodePoint(code)) {
+                    if (Character.isBmpCodePoint(code)) {
+                        emit((char) code);
+                    } else {
+                        emit(Character.highSurrogate(code));
+                        emit(Character.lowSurrogate(code));
+                    }
+                    return i + 1;
+                }
+            } else {
+                while (i < length && i - start <= MAX_ENTITY_LENGTH && isAsciiLetter(html.charAt(i))) {
+                    i++;
+                }
+                if (i > start + 1 && i < length && html.charAt(i) == ';') {
+                    String decoded = ENTITIES.get(html.substring(start + 1, i));
+                    if (decoded != null) {
+                        for (int k = 0; k < decoded.length(); k++) {
+                            emit(decoded.charAt(k));
+                        }
+                        return i + 1;
+                    }
                 }
-                builder.append(content);
             }
+            emit('&');
+            return start + 1;
         }
-    }
-    
-    private static String decodeHtmlEntities(String text) {
-        // Decode common HTML entities
-        text = text.replace("&nbsp;", " ");
-        text = text.replace("&amp;", "&");
-        text = text.replace("&lt;", "<");
-        text = text.replace("&gt;", ">");
-        text = text.replace("&quot;", "\"");
-        text = text.replace("&apos;", "'");
-        text = text.replace("&#39;", "'");
-        text = text.replace("&mdash;", "—");
-        text = text.replace("&ndash;", "–");
-        text = text.replace("&hellip;", "...");
-        text = text.replace("&copy;", "©");
-        text = text.replace("&reg;", "®");
-        text = text.replace("&trade;", "™");
-        text = text.replace("&euro;", "€");
-        text = text.replace("&pound;", "£");
-        text = text.replace("&yen;", "¥");
-        text = text.replace("&cent;", "¢");
         
-        // Decode numeric entities (&#123; format)
-        Pattern numericEntity = Pattern.compile("&#(\\d+);");
-        Matcher matcher = numericEntity.matcher(text);
-        StringBuffer result = new StringBuffer();
-        while (matcher.find()) {
-            int code = Integer.parseInt(matcher.group(1));
-            matcher.appendReplacement(result, String.valueOf((char) code));
+        /**
+         * Appends a text character, collapsing any run of whitespace (and tag boundaries) to one space
+         */
+        private void emit(char c) {
+            if (Character.isWhitespace(c) || c == ' ') {
+                pendingSpace = true;
+                return;
+            }
+            if (pendingSpace && out.length() > 0) {
+                out.append(' ');
+            }
+            pendingSpace = false;
+            out.append(c);
         }
-        matcher.appendTail(result);
-        text = result.toString();
         
-        // Decode hex entities (&#x1F; format)
-        Pattern hexEntity = Pattern.compile("&#x([0-9a-fA-F]+);");
-        matcher = hexEntity.matcher(text);
-        result = new StringBuffer();
-        while (matcher.find()) {
-            int code = Integer.parseInt(matcher.group(1), 16);
-            matcher.appendReplacement(result, String.valueOf((char) code));
+        private int skipPast(char c, int from) {
+            int end = html.indexOf(c, from);
+            return end < 0 ? length : end + 1;
         }
-        matcher.appendTail(result);
-        text = result.toString();
         
-        return text;
-    }
-    
-    /**
-     * Limits the extracted text to a maximum length to avoid token limits
-     */
-    public static String extractTextWithLimit(String html, int maxLength) {
-        String text = extractText(html);
-        if (text.length() > maxLength) {
-            text = text.substring(0, maxLength);
-            // Try to cut at a word boundary
-            int lastSpace = text.lastIndexOf(' ');
-            if (lastSpace > maxLength * 0.9) {
-                text = text.substring(0, lastSpace);
+        private boolean isOneOf(int nameStart, int nameEnd, String[] names) {
+            int nameLength = nameEnd - nameStart;
+            for (String name : names) {
+                if (name.length() == nameLength && html.regionMatches(true, nameStart, name, 0, nameLength)) {
+                    return true;
+                }
             }
-            text += "...";
+            return false;
+        }
+        
+        private static boolean isAsciiLetter(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+        
+        private static boolean isNameChar(char c) {
+            return isAsciiLetter(c) || (c >= '0' && c <= '9') || c == '-' || c == ':';
         }
-        return text;
     }
 }
-
@@ -0,0 +1,103 @@
+package util;
+
+public class SimHash {
+    private static final int SHINGLE_SIZE = 3;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    
+    /**
+     * Computes a 64-bit SimHash over word 3-shingles of the text.
+     * Texts that differ only in small parts (ads, bylines, footers) end up a few bits apart.
+     */
+    public static long fingerprint(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0L;
+        }
+        
+        int[] weights = new int[64];
+        long[] window = new long[SHINGLE_SIZE];
+        int words = 0;
+        
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i >= length) break;
+            
+            long wordHash = FNV_OFFSET;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                wordHash ^= Character.toLowerCase(text.charAt(i));
+                wordHash *= FNV_PRIME;
+                i++;
+            }
+            
+            window[words % SHINGLE_SIZE] = wordHash;
+            words++;
+            if (words >= SHINGLE_SIZE) {
+                addFeature(weights, shingleHash(window, words));
+            }
+        }
+        
+        // Too short for a full shingle - fall back to the individual words
+        if (words > 0 && words < SHINGLE_SIZE) {
+            for (int w = 0; w < words; w++) {
+                addFeature(weights, mix(window[w]));
+            }
+        }
+        
+        long fingerprint = 0L;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+    
+    /**
+     * Counts the words the fingerprint is built from, used to skip texts too short to compare reliably
+     */
+    public static int countWords(String text) {
+        if (text == null) return 0;
+        int count = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean letter = Character.isLetterOrDigit(text.charAt(i));
+            if (letter && !inWord) {
+                count++;
+            }
+            inWord = letter;
+        }
+        return count;
+    }
+    
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+    
+    private static long shingleHash(long[] window, int words) {
+        // Combine the words in order, oldest first
+        long hash = 0L;
+        for (int k = 0; k < SHINGLE_SIZE; k++) {
+            hash = hash * 31 + window[(words + k) % SHINGLE_SIZE];
+        }
+        return mix(hash);
+    }
+    
+    private static void addFeature(int[] weights, long hash) {
+        for (int bit = 0; bit < 64; bit++) {
+            weights[bit] += ((hash >>> bit) & 1L) != 0 ? 1 : -1;
+        }
+    }
+    
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
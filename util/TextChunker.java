@@ -0,0 +1,69 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+public class TextChunker {
+    
+    /**
+     * Splits text into chunks of at most maxChars, cutting only at sentence ends (., !, ? followed by
+     * whitespace, or a line break). A single sentence longer than maxChars is cut at its last space
+     * that fits, or hard at maxChars when it has none.
+     */
+    public static List<String> split(String text, int maxChars) {
+        return split(text, start -> Math.min(text.length(), start + maxChars));
+    }
+    
+    /**
+     * Same as split(text, maxChars), but each chunk holds at most maxTokens as counted by TokenEstimator
+     */
+    public static List<String> splitByTokens(String text, int maxTokens) {
+        return split(text, start -> TokenEstimator.prefixEnd(text, start, maxTokens));
+    }
+    
+    /**
+     * limitAt gives the furthest end a chunk starting at the given index may have
+     */
+    private static List<String> split(String text, IntUnaryOperator limitAt) {
+        List<String> chunks = new ArrayList<>();
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            // Skip whitespace between chunks
+            while (start < length && Character.isWhitespace(text.charAt(start))) {
+                start++;
+            }
+            if (start >= length) break;
+            
+            int limit = limitAt.applyAsInt(start);
+            int end = limit == length ? length : lastSentenceEnd(text, start, limit);
+            if (end <= start) {
+                int lastSpace = text.lastIndexOf(' ', limit - 1);
+                end = lastSpace > start ? lastSpace : limit;
+            }
+            chunks.add(text.substring(start, end).trim());
+            start = end;
+        }
+        return chunks;
+    }
+    
+    /**
+     * End (exclusive) of the last sentence that finishes within [start, limit), or -1
+     */
+    private static int lastSentenceEnd(String text, int start, int limit) {
+        for (int i = limit - 1; i > start; i--) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                return i + 1;
+            }
+            if (Character.isWhitespace(c)) {
+                char previous = text.charAt(i - 1);
+                if (previous == '.' || previous == '!' || previous == '?') {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,139 @@
+package util;
+
+/**
+ * Approximates the number of tokens a BPE tokenizer produces, in one pass over the characters and without
+ * allocating: a run of letters counts one token per 4 characters, a run of digits one per 3, every other
+ * visible ASCII character one, and every non-ASCII character one. Whitespace is folded into the next token.
+ * It tends to overestimate English prose slightly, which is the safe side for fitting a context window.
+ */
+public class TokenEstimator {
+    private static final int LETTERS_PER_TOKEN = 4;
+    private static final int DIGITS_PER_TOKEN = 3;
+    
+    // Character classes; runs of one class (except OTHER) are counted together
+    private static final int LETTER = 0;
+    private static final int DIGIT = 1;
+    private static final int SPACE = 2;
+    private static final int OTHER = 3;
+    
+    public static int estimate(String text) {
+        if (text == null) return 0;
+        return estimate(text, 0, text.length());
+    }
+    
+    public static int estimate(String text, int start, int end) {
+        int tokens = 0;
+        int i = start;
+        while (i < end) {
+            int runEnd = runEnd(text, i, end);
+            tokens += runTokens(text.charAt(i), runEnd - i);
+            i = runEnd;
+        }
+        return tokens;
+    }
+    
+    /**
+     * End of the longest part of text from start that fits in maxTokens, cut between runs. A single run over
+     * the budget (a very long word) is cut inside, at maxTokens characters, so the result always moves forward.
+     */
+    public static int prefixEnd(String text, int start, int maxTokens) {
+        int end = start;
+        int tokens = 0;
+        while (end < text.length()) {
+            int runEnd = runEnd(text, end, text.length());
+            int runTokens = runTokens(text.charAt(end), runEnd - end);
+            if (tokens + runTokens > maxTokens) {
+                return end > start ? end : Math.min(runEnd, start + Math.max(1, maxTokens));
+            }
+            tokens += runTokens;
+            end = runEnd;
+        }
+        return end;
+    }
+    
+    /**
+     * Keeps the start and the end of text within maxTokens, dropping the middle: headShare of the budget goes
+     * to the leading part, the rest to the trailing part. Both cuts fall on run boundaries, never inside a word.
+     */
+    public static String trimHeadAndTail(String text, int maxTokens, double headShare, String marker) {
+        int budget = maxTokens - estimate(marker);
+        if (estimate(text) <= maxTokens) return text;
+        if (budget <= 0) return "";
+        
+        int headBudget = (int) (budget * headShare);
+        int headEnd = 0;
+        int tokens = 0;
+        while (headEnd < text.length()) {
+            int runEnd = runEnd(text, headEnd, text.length());
+            int runTokens = runTokens(text.charAt(headEnd), runEnd - headEnd);
+            if (tokens + runTokens > headBudget) break;
+            tokens += runTokens;
+            headEnd = runEnd;
+        }
+        
+        int tailBudget = budget - tokens;
+        int tailStart = text.length();
+        tokens = 0;
+        while (tailStart > headEnd) {
+            int runStart = runStart(text, headEnd, tailStart);
+            int runTokens = runTokens(text.charAt(runStart), tailStart - runStart);
+            if (tokens + runTokens > tailBudget) break;
+            tokens += runTokens;
+            tailStart = runStart;
+        }
+        // Start the tail at a word rather than at the punctuation ending the dropped part
+        while (tailStart < text.length() && !Character.isLetterOrDigit(text.charAt(tailStart))) {
+            tailStart++;
+        }
+        return text.substring(0, headEnd).trim() + marker + text.substring(tailStart).trim();
+    }
+    
+    private static int runTokens(char first, int length) {
+        if (isLetter(first)) return (length + LETTERS_PER_TOKEN - 1) / LETTERS_PER_TOKEN;
+        if (isDigit(first)) return (length + DIGITS_PER_TOKEN - 1) / DIGITS_PER_TOKEN;
+        return Character.isWhitespace(first) ? 0 : 1;
+    }
+    
+    /**
+     * End of the run starting at i: letters, digits and whitespace form runs, anything else stands alone
+     */
+    private static int runEnd(String text, int i, int end) {
+        int kind = kind(text.charAt(i));
+        int j = i + 1;
+        if (kind != OTHER) {
+            while (j < end && kind(text.charAt(j)) == kind) {
+                j++;
+            }
+        }
+        return j;
+    }
+    
+    /**
+     * Start of the run ending just before end, not reaching below floor
+     */
+    private static int runStart(String text, int floor, int end) {
+        int kind = kind(text.charAt(end - 1));
+        int j = end - 1;
+        if (kind != OTHER) {
+            while (j > floor && kind(text.charAt(j - 1)) == kind) {
+                j--;
+            }
+        }
+        return j;
+    }
+    
+    private static int kind(char c) {
+        if (isLetter(c)) return LETTER;
+        if (isDigit(c)) return DIGIT;
+        if (Character.isWhitespace(c)) return SPACE;
+        return OTHER;
+    }
+    
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+    
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -2,33 +2,62 @@ package worker;
 
 import models.Job;
 import enums.JobStatus;
+import config.DatabaseConfiguration;
+import dao.DaoFactory;
 import dao.JobDao;
 import strategy.SummaryStrategy;
-import strategy.HuggingFaceStrategy;
+import strategy.ExtractiveSummaryStrategy;
+import strategy.MapReduceSummaryStrategy;
+import strategy.StrategyRegistry;
 import util.CacheKeyGenerator;
+import util.FutureUtils;
 import util.HtmlContentExtractor;
+import util.SimHash;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 public class JobWorker {
     private JobDao jobDao;
     private QueueService queueService;
     private RedisCache redisCache;
-    private SummaryStrategy strategy;
+    private NearDuplicateIndex nearDuplicateIndex;
+    private PageMetadataCache pageMetadataCache;
+    private PartialSummaryBuffer partialSummaries;
+    private StrategyRegistry strategies;
+    // Fallback and overload summaries bypass the extractive bulkhead: shedding them would fail the job
+    private SummaryStrategy extractive;
+    private boolean extractiveFallback;
+    // Overload thresholds for summarizing extractively instead of waiting on the model; 0 disables each
+    private long degradedWaitMs;
+    private int degradedQueueDepth;
+    private int maxExtractedChars;
     private HttpClient httpClient;
+    // Jobs between dispatch and completion, most of them waiting on the model without holding a thread
+    private final Semaphore inFlight;
     private boolean running;
     
     public JobWorker() {
-        this.jobDao = new JobDao();
+        this.jobDao = DaoFactory.getJobDao();
         this.queueService = QueueService.getInstance();
         this.redisCache = RedisCache.getInstance();
-        this.strategy = new HuggingFaceStrategy();
+        this.nearDuplicateIndex = NearDuplicateIndex.getInstance();
+        this.pageMetadataCache = PageMetadataCache.getInstance();
+        this.partialSummaries = PartialSummaryBuffer.getInstance();
+        this.strategies = StrategyRegistry.getInstance();
+        this.extractive = strategies.unbounded(ExtractiveSummaryStrategy.NAME);
+        this.maxExtractedChars = MapReduceSummaryStrategy.isEnabled() ? MapReduceSummaryStrategy.maxDocumentChars() : 10000;
+        this.extractiveFallback = DatabaseConfiguration.getBooleanEnv("EXTRACTIVE_FALLBACK", true);
+        this.degradedWaitMs = Math.max(0, DatabaseConfiguration.getIntEnv("DEGRADED_WAIT_MS", 0));
+        this.degradedQueueDepth = Math.max(0, DatabaseConfiguration.getIntEnv("DEGRADED_QUEUE_DEPTH", 0));
         this.httpClient = HttpClient.newBuilder()
             .connectTimeout(Duration.ofSeconds(10))
             .build();
+        this.inFlight = new Semaphore(Math.max(1, DatabaseConfiguration.getIntEnv("WORKER_MAX_IN_FLIGHT", 32)));
         this.running = true;
     }
     
@@ -42,13 +71,28 @@ public class JobWorker {
     
     private void processJobs() {
         while (running) {
+            boolean permit;
+            try {
+                if (degradedWaitMs > 0) {
+                    permit = inFlight.tryAcquire(degradedWaitMs, TimeUnit.MILLISECONDS);
+                } else {
+                    inFlight.acquire();
+                    permit = true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            // Every permit taken by a slow model or a backlog over the limit: keep jobs moving with local summaries
+            boolean degraded = !permit || (degradedQueueDepth > 0 && queueService.size() > degradedQueueDepth);
+            boolean dispatched = false;
             try {
                 String jobId = queueService.poll();
                 if (jobId == null) {
                     jobId = getNextQueuedJobId();
                 }
                 if (jobId != null) {
-                    processJob(jobId);
+                    dispatched = processJob(jobId, degraded);
                 } else {
                     Thread.sleep(1000);
                 }
@@ -58,6 +102,10 @@ public class JobWorker {
             } catch (Exception e) {
                 System.err.println("Error processing job: " + e.getMessage());
                 e.printStackTrace();
+            } finally {
+                if (permit && !dispatched) {
+                    inFlight.release();
+                }
             }
         }
     }
@@ -71,56 +119,163 @@ public class JobWorker {
         }
     }
     
-    private void processJob(String jobId) throws Exception {
+    /**
+     * Runs the job up to the model call, which then completes asynchronously.
+     * Returns true once the model call owns the in-flight permit, false if the job finished here.
+     * A degraded job is summarized extractively right away, and that summary is not cached for model jobs.
+     */
+    private boolean processJob(String jobId, boolean degraded) throws Exception {
         Job job = jobDao.findById(jobId);
-        if (job == null) return;
+        // Outbox delivery is at-least-once, and the same job may also be picked up by the queued-job poll
+        if (job == null || job.getStatus() != JobStatus.QUEUED) return false;
         
-        String cacheKey = CacheKeyGenerator.generate(job.getInputContent(), job.isUrl());
-        String cachedSummary = redisCache.get(cacheKey);
+        String cacheKey = CacheKeyGenerator.forJob(job);
+        long cacheTtlMs = redisCache.summaryTtlMs(job.isUrl());
+        String cachedSummary = redisCache.getSummary(cacheKey, cacheTtlMs);
         if (cachedSummary != null) {
             cachedSummary = normalizeSummary(cachedSummary);
             jobDao.updateOutput(jobId, cachedSummary);
             jobDao.updateStatus(jobId, JobStatus.COMPLETED);
             redisCache.clearProcessingMarker(cacheKey);
-            return;
+            return false;
         }
         
         String processingJobId = redisCache.getProcessingJobId(cacheKey);
         if (processingJobId != null && !processingJobId.equals(jobId)) {
             Thread.sleep(500);
-            cachedSummary = redisCache.get(cacheKey);
+            cachedSummary = redisCache.getSummary(cacheKey, cacheTtlMs);
             if (cachedSummary != null) {
                 cachedSummary = normalizeSummary(cachedSummary);
                 jobDao.updateOutput(jobId, cachedSummary);
                 jobDao.updateStatus(jobId, JobStatus.COMPLETED);
-                return;
+                redisCache.clearProcessingMarker(cacheKey);
+                return false;
             }
         }
         
         jobDao.updateStatus(jobId, JobStatus.PROCESSING);
         
         try {
-            String content = fetchContent(job);
-            String summary = strategy.generateSummary(content);
+            // Null is the default strategy; only its summaries are kept under page text keys and in the near-duplicate index
+            boolean defaultStrategy = job.getStrategy() == null;
+            FetchedContent fetched = fetchContent(job, defaultStrategy);
+            if (fetched.summary != null) {
+                // Page not modified (or its text was already summarized) - no LLM call needed
+                String summary = normalizeSummary(fetched.summary);
+                jobDao.updateOutput(jobId, summary);
+                jobDao.updateStatus(jobId, JobStatus.COMPLETED);
+                redisCache.setSummary(cacheKey, summary, cacheTtlMs);
+                redisCache.clearProcessingMarker(cacheKey);
+                return false;
+            }
+            String content = fetched.text;
             
-            // Normalize summary: replace newlines and clean up whitespace
-            summary = normalizeSummary(summary);
+            boolean indexable = defaultStrategy && nearDuplicateIndex.accepts(content);
+            long fingerprint = indexable ? SimHash.fingerprint(content) : 0L;
+            if (indexable && reuseNearDuplicate(jobId, cacheKey, cacheTtlMs, fingerprint)) {
+                return false;
+            }
             
-            jobDao.updateOutput(jobId, summary);
-            jobDao.updateStatus(jobId, JobStatus.COMPLETED);
+            if (degraded) {
+                completeJob(jobId, null, 0L, fetched, false, 0L, extractive.generateSummary(content), false);
+                redisCache.clearProcessingMarker(cacheKey);
+                System.err.println("Worker overloaded, summarized job " + jobId + " extractively");
+                return false;
+            }
             
-            redisCache.set(cacheKey, summary);
-            redisCache.set("job:" + jobId, summary);
+            SummaryStrategy strategy = strategies.get(job.getStrategy());
+            strategy.generateSummaryAsync(content, partial -> partialSummaries.update(jobId, partial)).whenComplete((summary, error) -> {
+                try {
+                    if (error != null) {
+                        Throwable cause = FutureUtils.unwrap(error);
+                        System.err.println("Error summarizing job " + jobId + ": " + cause.getMessage());
+                        if (extractiveFallback && !ExtractiveSummaryStrategy.NAME.equals(job.getStrategy())) {
+                            completeJob(jobId, null, 0L, fetched, false, 0L, extractive.generateSummary(content), false);
+                            System.err.println("Completed job " + jobId + " with an extractive summary");
+                        } else {
+                            jobDao.updateStatus(jobId, JobStatus.FAILED);
+                        }
+                    } else {
+                        completeJob(jobId, cacheKey, cacheTtlMs, fetched, indexable, fingerprint, summary, defaultStrategy);
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error completing job " + jobId + ": " + e.getMessage());
+                } finally {
+                    // Success, fallback or failure: later submits of this content must not wait on this job
+                    redisCache.clearProcessingMarker(cacheKey);
+                    // The stored summary (or failed status) is visible by now, so the partial can go
+                    partialSummaries.remove(jobId);
+                    inFlight.release();
+                }
+            });
+            return true;
         } catch (Exception e) {
             jobDao.updateStatus(jobId, JobStatus.FAILED);
+            redisCache.clearProcessingMarker(cacheKey);
             throw e;
         }
     }
     
-    private String fetchContent(Job job) throws Exception {
+    /**
+     * Stores the summary on the job and in the caches: under cacheKey (for cacheTtlMs) unless it is null,
+     * and under the page text key and in the near-duplicate index only for default strategy summaries
+     */
+    private void completeJob(String jobId, String cacheKey, long cacheTtlMs, FetchedContent fetched, boolean indexable,
+                             long fingerprint, String summary, boolean defaultStrategy) throws Exception {
+        // Normalize summary: replace newlines and clean up whitespace
+        summary = normalizeSummary(summary);
+        
+        jobDao.updateOutput(jobId, summary);
+        jobDao.updateStatus(jobId, JobStatus.COMPLETED);
+        
+        if (cacheKey != null) {
+            redisCache.setSummary(cacheKey, summary, cacheTtlMs);
+            redisCache.clearProcessingMarker(cacheKey);
+        }
+        redisCache.set("job:" + jobId, summary);
+        if (defaultStrategy && fetched.textKey != null) {
+            redisCache.setSummary(fetched.textKey, summary);
+        }
+        if (indexable) {
+            nearDuplicateIndex.add(fingerprint, cacheKey);
+        }
+    }
+    
+    /**
+     * Completes the job with the summary of already processed content that is a near-duplicate
+     * of this one (e.g. a syndicated copy with different ads or footer), skipping the LLM call
+     */
+    private boolean reuseNearDuplicate(String jobId, String cacheKey, long cacheTtlMs, long fingerprint) throws Exception {
+        String duplicateKey = nearDuplicateIndex.findNearDuplicate(fingerprint);
+        if (duplicateKey == null || duplicateKey.equals(cacheKey)) {
+            return false;
+        }
+        
+        String summary = redisCache.getSummary(duplicateKey);
+        if (summary == null) {
+            // The summary was evicted or expired; without it the entry can only cause misses
+            nearDuplicateIndex.remove(duplicateKey);
+            return false;
+        }
+        
+        summary = normalizeSummary(summary);
+        jobDao.updateOutput(jobId, summary);
+        jobDao.updateNearDuplicateOf(jobId, duplicateKey);
+        jobDao.updateStatus(jobId, JobStatus.COMPLETED);
+        
+        redisCache.setSummary(cacheKey, summary, cacheTtlMs);
+        redisCache.clearProcessingMarker(cacheKey);
+        return true;
+    }
+    
+    /**
+     * Reads the job's input; reuseSummaries allows a URL fetch to return the cached default strategy
+     * summary of the page text instead of the text
+     */
+    private FetchedContent fetchContent(Job job, boolean reuseSummaries) throws Exception {
         if (!job.isUrl()) {
             // Direct text content - return as is
-            return job.getInputContent();
+            return new FetchedContent(job.getInputContent(), null, null);
         }
         
         // URL content - fetch from URL
@@ -135,33 +290,57 @@ public class JobWorker {
             throw new Exception("Invalid URL format. URL must start with http:// or https://");
         }
         
-        return fetchFromUrl(trimmedUrl);
+        return fetchFromUrl(trimmedUrl, reuseSummaries);
     }
     
-    private String fetchFromUrl(String url) throws Exception {
+    /**
+     * Fetches the page, revalidating with If-None-Match / If-Modified-Since when the summary
+     * of its last fetched text is still cached, so a 304 reuses that summary without a download.
+     * Reached once the URL's own summary has expired (URL_SUMMARY_TTL_SECONDS); the text summary does not expire
+     */
+    private FetchedContent fetchFromUrl(String url, boolean reuseSummaries) throws Exception {
+        PageMetadataCache.PageMetadata previous = reuseSummaries ? pageMetadataCache.get(url) : null;
+        String previousSummary = previous != null ? redisCache.getSummary(previous.getTextKey()) : null;
+        
         // Create HTTP request with headers to mimic a browser
-        HttpRequest request = HttpRequest.newBuilder()
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
             .uri(URI.create(url))
             .header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36")
             .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8")
             .header("Accept-Language", "en-US,en;q=0.5")
             .timeout(Duration.ofSeconds(30))
-            .GET()
-            .build();
+            .GET();
+        if (previousSummary != null) {
+            if (previous.getEtag() != null) {
+                requestBuilder.header("If-None-Match", previous.getEtag());
+            }
+            if (previous.getLastModified() != null) {
+                requestBuilder.header("If-Modified-Since", previous.getLastModified());
+            }
+        }
         
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
         
-        if (response.statusCode() == 200) {
+        if (response.statusCode() == 304 && previousSummary != null) {
+            return new FetchedContent(null, previous.getTextKey(), previousSummary);
+        } else if (response.statusCode() == 200) {
             String htmlContent = response.body();
             
             // Extract readable text from HTML
-            String extractedText = HtmlContentExtractor.extractTextWithLimit(htmlContent, 10000);
+            String extractedText = HtmlContentExtractor.extractTextWithLimit(htmlContent, maxExtractedChars);
             
             if (extractedText == null || extractedText.trim().isEmpty()) {
                 throw new Exception("No readable content found in the URL");
             }
             
-            return extractedText;
+            // Same extracted text as any earlier fetch (e.g. only markup changed) reuses its summary
+            String textKey = CacheKeyGenerator.generate(extractedText, false);
+            pageMetadataCache.put(url, new PageMetadataCache.PageMetadata(
+                response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null),
+                textKey));
+            
+            return new FetchedContent(extractedText, textKey, reuseSummaries ? redisCache.getSummary(textKey) : null);
         } else {
             throw new Exception("Failed to fetch content from URL. HTTP Status: " + response.statusCode());
         }
@@ -180,5 +359,19 @@ public class JobWorker {
         
         return summary.trim();
     }
+    
+    private static class FetchedContent {
+        final String text;
+        // Cache key of the extracted page text, null for direct text jobs
+        final String textKey;
+        // Already cached summary for this content, if any
+        final String summary;
+        
+        FetchedContent(String text, String textKey, String summary) {
+            this.text = text;
+            this.textKey = textKey;
+            this.summary = summary;
+        }
+    }
 }
 
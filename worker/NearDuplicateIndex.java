@@ -0,0 +1,214 @@
+package worker;
+
+import config.DatabaseConfiguration;
+import util.SimHash;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory locality-sensitive index over SimHash fingerprints of extracted text.
+ * The 64-bit fingerprint is split into maxDistance + 1 bands; by the pigeonhole principle
+ * any fingerprint within maxDistance bits shares at least one band exactly, so a lookup
+ * only compares against the few entries in its own band buckets.
+ * Holds one fingerprint per cache key and at most NEAR_DUPLICATE_MAX_ENTRIES keys, evicting the
+ * least recently added.
+ */
+public class NearDuplicateIndex {
+    private static NearDuplicateIndex instance;
+    
+    private final boolean enabled;
+    private final int maxDistance;
+    private final int minWords;
+    private final int[] bandShifts;
+    private final long[] bandMasks;
+    private final List<Map<Long, Bucket>> bands;
+    private final int maxEntries;
+    // Cache key -> fingerprint, oldest first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private NearDuplicateIndex() {
+        this(DatabaseConfiguration.getBooleanEnv("NEAR_DUPLICATE_ENABLED", true),
+            DatabaseConfiguration.getIntEnv("NEAR_DUPLICATE_MAX_DISTANCE", 3),
+            DatabaseConfiguration.getIntEnv("NEAR_DUPLICATE_MIN_WORDS", 50),
+            DatabaseConfiguration.getIntEnv("NEAR_DUPLICATE_MAX_ENTRIES", 100000));
+    }
+    
+    NearDuplicateIndex(boolean enabled, int maxDistance, int minWords, int maxEntries) {
+        this.enabled = enabled;
+        this.maxDistance = Math.max(0, Math.min(15, maxDistance));
+        this.minWords = minWords;
+        this.maxEntries = Math.max(1, maxEntries);
+        
+        int bandCount = this.maxDistance + 1;
+        bandShifts = new int[bandCount];
+        bandMasks = new long[bandCount];
+        bands = new ArrayList<>(bandCount);
+        int shift = 0;
+        for (int i = 0; i < bandCount; i++) {
+            int width = 64 / bandCount + (i < 64 % bandCount ? 1 : 0);
+            bandShifts[i] = shift;
+            bandMasks[i] = width == 64 ? -1L : (1L << width) - 1;
+            bands.add(new HashMap<>());
+            shift += width;
+        }
+    }
+    
+    public static NearDuplicateIndex getInstance() {
+        if (instance == null) {
+            synchronized (NearDuplicateIndex.class) {
+                if (instance == null) {
+                    instance = new NearDuplicateIndex();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Whether the text is long enough for its fingerprint to be compared reliably
+     */
+    public boolean accepts(String text) {
+        return enabled && SimHash.countWords(text) >= minWords;
+    }
+    
+    /**
+     * Returns the cache key of the closest indexed content within the distance threshold, or null
+     */
+    public String findNearDuplicate(long fingerprint) {
+        lock.readLock().lock();
+        try {
+            String bestKey = null;
+            int bestDistance = maxDistance + 1;
+            for (int i = 0; i < bandShifts.length; i++) {
+                Bucket bucket = bands.get(i).get(band(fingerprint, i));
+                if (bucket == null) continue;
+                for (int j = 0; j < bucket.size; j++) {
+                    int distance = SimHash.distance(fingerprint, bucket.fingerprints[j]);
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        bestKey = bucket.cacheKeys[j];
+                        if (distance == 0) {
+                            return bestKey;
+                        }
+                    }
+                }
+            }
+            return bestKey;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Indexes the fingerprint under the cache key, replacing the key's previous fingerprint (a page
+     * whose content changed) and evicting the oldest keys beyond the size limit
+     */
+    public void add(long fingerprint, String cacheKey) {
+        lock.writeLock().lock();
+        try {
+            Long previous = entries.remove(cacheKey);
+            if (previous != null && previous != fingerprint) {
+                unindex(previous, cacheKey);
+            }
+            entries.put(cacheKey, fingerprint);
+            if (previous == null || previous != fingerprint) {
+                for (int i = 0; i < bandShifts.length; i++) {
+                    bands.get(i).computeIfAbsent(band(fingerprint, i), k -> new Bucket()).add(fingerprint, cacheKey);
+                }
+            }
+            Iterator<Map.Entry<String, Long>> oldest = entries.entrySet().iterator();
+            while (entries.size() > maxEntries) {
+                Map.Entry<String, Long> entry = oldest.next();
+                unindex(entry.getValue(), entry.getKey());
+                oldest.remove();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Drops the cache key, e.g. once its summary is no longer cached
+     */
+    public void remove(String cacheKey) {
+        lock.writeLock().lock();
+        try {
+            Long fingerprint = entries.remove(cacheKey);
+            if (fingerprint != null) {
+                unindex(fingerprint, cacheKey);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Band buckets currently allocated; every one holds at least one entry
+     */
+    int bucketCount() {
+        lock.readLock().lock();
+        try {
+            int count = 0;
+            for (Map<Long, Bucket> buckets : bands) {
+                count += buckets.size();
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private void unindex(long fingerprint, String cacheKey) {
+        for (int i = 0; i < bandShifts.length; i++) {
+            Map<Long, Bucket> buckets = bands.get(i);
+            long band = band(fingerprint, i);
+            Bucket bucket = buckets.get(band);
+            if (bucket != null && bucket.remove(fingerprint, cacheKey) && bucket.size == 0) {
+                buckets.remove(band);
+            }
+        }
+    }
+    
+    private long band(long fingerprint, int index) {
+        return (fingerprint >>> bandShifts[index]) & bandMasks[index];
+    }
+    
+    private static class Bucket {
+        long[] fingerprints = new long[2];
+        String[] cacheKeys = new String[2];
+        int size;
+        
+        void add(long fingerprint, String cacheKey) {
+            if (size == fingerprints.length) {
+                fingerprints = Arrays.copyOf(fingerprints, size * 2);
+                cacheKeys = Arrays.copyOf(cacheKeys, size * 2);
+            }
+            fingerprints[size] = fingerprint;
+            cacheKeys[size] = cacheKey;
+            size++;
+        }
+        
+        /**
+         * Removes the entry by moving the last one into its place; order within a bucket does not matter
+         */
+        boolean remove(long fingerprint, String cacheKey) {
+            for (int i = 0; i < size; i++) {
+                if (fingerprints[i] == fingerprint && cacheKeys[i].equals(cacheKey)) {
+                    size--;
+                    fingerprints[i] = fingerprints[size];
+                    cacheKeys[i] = cacheKeys[size];
+                    cacheKeys[size] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
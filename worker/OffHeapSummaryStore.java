@@ -0,0 +1,284 @@
+package worker;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Off-heap value store for cached summaries.
+ * Values are kept as deflate-compressed UTF-8 records appended to direct ByteBuffer slabs,
+ * and the only on-heap structure is an open-addressing table of key hash -> slab address.
+ * When every slab is full the oldest one is recycled, evicting its entries (FIFO), so memory stays bounded.
+ *
+ * Record layout: [int keyLength][int storedLength][int rawLength][byte compressed][key bytes][value bytes]
+ */
+public class OffHeapSummaryStore {
+    private static final int HEADER_SIZE = 13;
+    private static final int MIN_COMPRESS_SIZE = 64;
+    private static final int INITIAL_INDEX_CAPACITY = 1 << 16;
+    
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+    private static final ThreadLocal<byte[]> COMPRESS_BUFFER = ThreadLocal.withInitial(() -> new byte[8192]);
+    
+    private final int slabSize;
+    private final ByteBuffer[] slabs;
+    private int currentSlab;
+    private int writeOffset;
+    
+    private long[] indexHashes;
+    private long[] indexAddresses;
+    private int indexCount;
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    public OffHeapSummaryStore(int slabSize, int maxSlabs) {
+        this.slabSize = slabSize;
+        this.slabs = new ByteBuffer[Math.max(1, maxSlabs)];
+        this.slabs[0] = ByteBuffer.allocateDirect(slabSize);
+        this.indexHashes = new long[INITIAL_INDEX_CAPACITY];
+        this.indexAddresses = new long[INITIAL_INDEX_CAPACITY];
+    }
+    
+    public void put(String key, String value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] raw = value.getBytes(StandardCharsets.UTF_8);
+        
+        byte[] stored = raw;
+        int storedLength = raw.length;
+        boolean compressed = false;
+        if (raw.length >= MIN_COMPRESS_SIZE) {
+            byte[] buffer = compressBuffer(raw.length);
+            Deflater deflater = DEFLATER.get();
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            int length = deflater.deflate(buffer);
+            // Only keep the compressed form if it fit and actually saved space
+            if (deflater.finished() && length < raw.length) {
+                stored = buffer;
+                storedLength = length;
+                compressed = true;
+            }
+        }
+        
+        int recordLength = HEADER_SIZE + keyBytes.length + storedLength;
+        if (recordLength > slabSize) {
+            return;
+        }
+        
+        long hash = hash(keyBytes);
+        lock.writeLock().lock();
+        try {
+            if (writeOffset + recordLength > slabSize) {
+                advanceSlab();
+            }
+            ByteBuffer slab = slabs[currentSlab].duplicate();
+            slab.position(writeOffset);
+            slab.putInt(keyBytes.length);
+            slab.putInt(storedLength);
+            slab.putInt(raw.length);
+            slab.put((byte) (compressed ? 1 : 0));
+            slab.put(keyBytes);
+            slab.put(stored, 0, storedLength);
+            
+            long address = ((long) currentSlab << 32) | writeOffset;
+            writeOffset += recordLength;
+            
+            int slot = findSlot(hash, keyBytes);
+            if (slot >= 0) {
+                indexAddresses[slot] = address;
+            } else {
+                insert(hash, address);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public String get(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(keyBytes);
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(hash, keyBytes);
+            if (slot < 0) {
+                return null;
+            }
+            return readValue(indexAddresses[slot]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Drops the key from the index; its record stays in the slab until the slab is recycled
+     */
+    public void remove(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(keyBytes);
+        lock.writeLock().lock();
+        try {
+            int hole = findSlot(hash, keyBytes);
+            if (hole < 0) {
+                return;
+            }
+            // Backward-shift deletion: later entries of the probe run move up, so no tombstones are needed
+            int mask = indexHashes.length - 1;
+            int next = (hole + 1) & mask;
+            while (indexHashes[next] != 0) {
+                int home = (int) (indexHashes[next] ^ (indexHashes[next] >>> 32)) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    indexHashes[hole] = indexHashes[next];
+                    indexAddresses[hole] = indexAddresses[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            indexHashes[hole] = 0;
+            indexAddresses[hole] = 0;
+            indexCount--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return indexCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private String readValue(long address) {
+        ByteBuffer slab = slabs[(int) (address >>> 32)].duplicate();
+        int offset = (int) address;
+        int keyLength = slab.getInt(offset);
+        int storedLength = slab.getInt(offset + 4);
+        int rawLength = slab.getInt(offset + 8);
+        boolean compressed = slab.get(offset + 12) != 0;
+        
+        int dataOffset = offset + HEADER_SIZE + keyLength;
+        slab.limit(dataOffset + storedLength).position(dataOffset);
+        
+        byte[] raw = new byte[rawLength];
+        if (!compressed) {
+            slab.get(raw);
+        } else {
+            Inflater inflater = INFLATER.get();
+            inflater.reset();
+            inflater.setInput(slab);
+            try {
+                inflater.inflate(raw);
+            } catch (DataFormatException e) {
+                System.err.println("Corrupt off-heap cache record: " + e.getMessage());
+                return null;
+            }
+        }
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Moves writing to the next slab, recycling it and dropping its entries if it already holds data
+     */
+    private void advanceSlab() {
+        currentSlab = (currentSlab + 1) % slabs.length;
+        writeOffset = 0;
+        if (slabs[currentSlab] == null) {
+            slabs[currentSlab] = ByteBuffer.allocateDirect(slabSize);
+            return;
+        }
+        
+        long[] oldHashes = indexHashes;
+        long[] oldAddresses = indexAddresses;
+        indexHashes = new long[oldHashes.length];
+        indexAddresses = new long[oldAddresses.length];
+        indexCount = 0;
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] != 0 && (int) (oldAddresses[i] >>> 32) != currentSlab) {
+                insert(oldHashes[i], oldAddresses[i]);
+            }
+        }
+    }
+    
+    /**
+     * Returns the index slot holding this key, or -1 if it is not present
+     */
+    private int findSlot(long hash, byte[] keyBytes) {
+        int mask = indexHashes.length - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (indexHashes[slot] != 0) {
+            if (indexHashes[slot] == hash && keyMatches(indexAddresses[slot], keyBytes)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    private boolean keyMatches(long address, byte[] keyBytes) {
+        ByteBuffer slab = slabs[(int) (address >>> 32)];
+        int offset = (int) address;
+        if (slab.getInt(offset) != keyBytes.length) {
+            return false;
+        }
+        int keyOffset = offset + HEADER_SIZE;
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (slab.get(keyOffset + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void insert(long hash, long address) {
+        if ((indexCount + 1) * 2 > indexHashes.length) {
+            resizeIndex();
+        }
+        int mask = indexHashes.length - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (indexHashes[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        indexHashes[slot] = hash;
+        indexAddresses[slot] = address;
+        indexCount++;
+    }
+    
+    private void resizeIndex() {
+        long[] oldHashes = indexHashes;
+        long[] oldAddresses = indexAddresses;
+        indexHashes = new long[oldHashes.length * 2];
+        indexAddresses = new long[oldAddresses.length * 2];
+        indexCount = 0;
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] != 0) {
+                insert(oldHashes[i], oldAddresses[i]);
+            }
+        }
+    }
+    
+    private static byte[] compressBuffer(int minLength) {
+        byte[] buffer = COMPRESS_BUFFER.get();
+        if (buffer.length < minLength) {
+            buffer = new byte[minLength];
+            COMPRESS_BUFFER.set(buffer);
+        }
+        return buffer;
+    }
+    
+    private static long hash(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        // 0 marks an empty index slot
+        return hash == 0 ? 1 : hash;
+    }
+}
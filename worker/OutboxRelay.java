@@ -0,0 +1,95 @@
+package worker;
+
+import config.DatabaseConfiguration;
+import dao.DaoFactory;
+import dao.JobDao;
+
+/**
+ * Moves committed outbox entries into the in-memory QueueService in batches.
+ * Submit wakes the relay right after its transaction commits, and it also polls on an interval, so
+ * entries left over from a crash or committed through the write-behind journal are still delivered.
+ */
+public class OutboxRelay {
+    private static OutboxRelay instance;
+    
+    private final JobDao jobDao = DaoFactory.getJobDao();
+    private final QueueService queueService = QueueService.getInstance();
+    private final Object signal = new Object();
+    private final int batchSize;
+    private final long intervalMs;
+    private volatile boolean running = true;
+    private boolean woken;
+    private final Thread thread;
+    
+    private OutboxRelay() {
+        batchSize = Math.max(1, DatabaseConfiguration.getIntEnv("OUTBOX_RELAY_BATCH_SIZE", 100));
+        intervalMs = Math.max(10, DatabaseConfiguration.getIntEnv("OUTBOX_RELAY_INTERVAL_MS", 200));
+        thread = new Thread(this::run, "outbox-relay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    public static OutboxRelay getInstance() {
+        if (instance == null) {
+            synchronized (OutboxRelay.class) {
+                if (instance == null) {
+                    instance = new OutboxRelay();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Signals that new entries were committed
+     */
+    public void wake() {
+        synchronized (signal) {
+            woken = true;
+            signal.notify();
+        }
+    }
+    
+    public void stop() {
+        running = false;
+        wake();
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void run() {
+        while (running) {
+            try {
+                synchronized (signal) {
+                    if (!woken) {
+                        signal.wait(intervalMs);
+                    }
+                    woken = false;
+                }
+                relay();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+    
+    private void relay() {
+        try {
+            int relayed;
+            do {
+                relayed = jobDao.drainOutbox(batchSize, jobIds -> {
+                    for (String jobId : jobIds) {
+                        queueService.enqueue(jobId);
+                    }
+                });
+            } while (relayed >= batchSize && running);
+        } catch (Exception e) {
+            // Entries stay in the outbox and are retried on the next pass
+            System.err.println("Error relaying job outbox: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package worker;
+
+import config.DatabaseConfiguration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers validators of fetched pages (ETag, Last-Modified) and the cache key of their
+ * extracted text, so re-fetches of a URL can be conditional.
+ * Holds at most PAGE_METADATA_MAX_ENTRIES pages, evicting the least recently used.
+ */
+public class PageMetadataCache {
+    private static PageMetadataCache instance;
+    private Map<String, PageMetadata> pages;
+    
+    private PageMetadataCache() {
+        int maxEntries = Math.max(1, DatabaseConfiguration.getIntEnv("PAGE_METADATA_MAX_ENTRIES", 10000));
+        pages = Collections.synchronizedMap(new LinkedHashMap<String, PageMetadata>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PageMetadata> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+    
+    public static PageMetadataCache getInstance() {
+        if (instance == null) {
+            synchronized (PageMetadataCache.class) {
+                if (instance == null) {
+                    instance = new PageMetadataCache();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    public PageMetadata get(String url) {
+        return pages.get(url);
+    }
+    
+    public void put(String url, PageMetadata metadata) {
+        pages.put(url, metadata);
+    }
+    
+    public static class PageMetadata {
+        private final String etag;
+        private final String lastModified;
+        private final String textKey;
+        
+        public PageMetadata(String etag, String lastModified, String textKey) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.textKey = textKey;
+        }
+        
+        public String getEtag() {
+            return etag;
+        }
+        
+        public String getLastModified() {
+            return lastModified;
+        }
+        
+        public String getTextKey() {
+            return textKey;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package worker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Text generated so far for jobs whose summary is still streaming in, keyed by job id.
+ * Entries only live on the node running the job and are removed once the final summary is stored.
+ */
+public class PartialSummaryBuffer {
+    private static PartialSummaryBuffer instance;
+    private final Map<String, String> partials;
+    
+    private PartialSummaryBuffer() {
+        partials = new ConcurrentHashMap<>();
+    }
+    
+    public static PartialSummaryBuffer getInstance() {
+        if (instance == null) {
+            synchronized (PartialSummaryBuffer.class) {
+                if (instance == null) {
+                    instance = new PartialSummaryBuffer();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    public void update(String jobId, String text) {
+        partials.put(jobId, text);
+    }
+    
+    public String get(String jobId) {
+        return partials.get(jobId);
+    }
+    
+    public void remove(String jobId) {
+        partials.remove(jobId);
+    }
+}
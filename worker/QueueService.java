@@ -33,5 +33,9 @@ public class QueueService {
     public String poll() {
         return jobQueue.poll();
     }
+    
+    public int size() {
+        return jobQueue.size();
+    }
 }
 
@@ -1,15 +1,46 @@
 package worker;
 
+import config.DatabaseConfiguration;
+import dao.DaoFactory;
+import dao.SummaryCacheDao;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.Iterator;
 import java.util.Map;
 
 public class RedisCache {
     private static RedisCache instance;
     private Map<String, String> cache;
     private static final String PROCESSING_PREFIX = "processing:";
+    private static final int MB = 1024 * 1024;
+    private static final long PURGE_INTERVAL_MS = 60_000;
+    
+    // Summaries live off-heap when CACHE_STORAGE=offheap; processing markers always stay in the map
+    private OffHeapSummaryStore offHeapStore;
+    
+    // Shared durable tier (summary_cache table) consulted on an in-process miss
+    private boolean l2Enabled;
+    private SummaryCacheDao summaryCacheDao;
+    
+    // Expiry time per summary cached with a TTL; summaries without an entry never expire
+    private Map<String, Long> expiries;
+    // Pages change, so URL summaries expire and the next submit revalidates the page
+    private long urlSummaryTtlMs;
+    // Expired summaries that are never read again are dropped by a sweep at most once per interval
+    private final AtomicLong nextPurgeAt = new AtomicLong(System.currentTimeMillis() + PURGE_INTERVAL_MS);
     
     private RedisCache() {
         cache = new ConcurrentHashMap<>();
+        expiries = new ConcurrentHashMap<>();
+        urlSummaryTtlMs = Math.max(0, DatabaseConfiguration.getIntEnv("URL_SUMMARY_TTL_SECONDS", 3600)) * 1000L;
+        // The summary_cache table is MySQL-only; the embedded backend keeps summaries in process
+        l2Enabled = !DaoFactory.isEmbedded() && DatabaseConfiguration.getBooleanEnv("SUMMARY_CACHE_L2_ENABLED", true);
+        summaryCacheDao = new SummaryCacheDao();
+        if ("offheap".equalsIgnoreCase(DatabaseConfiguration.getEnv("CACHE_STORAGE", "heap"))) {
+            int slabMb = Math.max(1, DatabaseConfiguration.getIntEnv("CACHE_OFFHEAP_SLAB_MB", 64));
+            int maxMb = Math.max(slabMb, DatabaseConfiguration.getIntEnv("CACHE_OFFHEAP_MAX_MB", 1024));
+            offHeapStore = new OffHeapSummaryStore(slabMb * MB, maxMb / slabMb);
+        }
     }
     
     public static RedisCache getInstance() {
@@ -24,13 +55,128 @@ public class RedisCache {
     }
     
     public void set(String key, String value) {
-        cache.put(key, value);
+        if (offHeapStore != null) {
+            offHeapStore.put(key, value);
+        } else {
+            cache.put(key, value);
+        }
     }
     
     public String get(String key) {
+        if (offHeapStore != null) {
+            return offHeapStore.get(key);
+        }
         return cache.get(key);
     }
     
+    /**
+     * TTL for the summary of a submitted input: URL_SUMMARY_TTL_SECONDS for URLs, none (0) for text
+     */
+    public long summaryTtlMs(boolean isUrl) {
+        return isUrl ? urlSummaryTtlMs : 0;
+    }
+    
+    public String getSummary(String cacheKey) {
+        return getSummary(cacheKey, 0);
+    }
+    
+    /**
+     * Looks up a content summary in memory first, then in the shared summary_cache table.
+     * With a TTL, a table row last written longer ago than that is ignored
+     */
+    public String getSummary(String cacheKey, long ttlMs) {
+        String summary = get(cacheKey);
+        if (summary != null && isExpired(cacheKey)) {
+            summary = null;
+        }
+        if (summary != null || !l2Enabled) {
+            return summary;
+        }
+        
+        long remainingMs = ttlMs;
+        summary = SummaryCacheWriter.getInstance().getPending(cacheKey);
+        if (summary == null) {
+            try {
+                SummaryCacheDao.CachedSummary found = summaryCacheDao.find(cacheKey);
+                if (found != null && (ttlMs <= 0 || found.getAgeMs() < ttlMs)) {
+                    summary = found.getSummary();
+                    remainingMs = ttlMs - found.getAgeMs();
+                }
+            } catch (Exception e) {
+                System.err.println("Error reading summary cache: " + e.getMessage());
+                return null;
+            }
+        }
+        if (summary != null) {
+            setLocal(cacheKey, summary, remainingMs);
+        }
+        return summary;
+    }
+    
+    /**
+     * Whether this node holds an unexpired summary for the key, without falling through to the summary_cache table
+     */
+    public boolean hasLocalSummary(String cacheKey) {
+        return get(cacheKey) != null && !isExpired(cacheKey);
+    }
+    
+    public void setSummary(String cacheKey, String summary) {
+        setSummary(cacheKey, summary, 0);
+    }
+    
+    /**
+     * Caches a content summary in memory, expiring after ttlMs if that is positive,
+     * and queues it for the shared summary_cache table
+     */
+    public void setSummary(String cacheKey, String summary, long ttlMs) {
+        setLocal(cacheKey, summary, ttlMs);
+        if (l2Enabled) {
+            SummaryCacheWriter.getInstance().submit(cacheKey, summary);
+        }
+    }
+    
+    private void setLocal(String cacheKey, String summary, long ttlMs) {
+        long now = System.currentTimeMillis();
+        set(cacheKey, summary);
+        if (ttlMs > 0) {
+            expiries.put(cacheKey, now + ttlMs);
+        } else {
+            expiries.remove(cacheKey);
+        }
+        long purgeAt = nextPurgeAt.get();
+        if (now >= purgeAt && nextPurgeAt.compareAndSet(purgeAt, now + PURGE_INTERVAL_MS)) {
+            purgeExpired(now);
+        }
+    }
+    
+    private boolean isExpired(String cacheKey) {
+        Long expiresAt = expiries.get(cacheKey);
+        if (expiresAt == null || System.currentTimeMillis() < expiresAt) {
+            return false;
+        }
+        removeSummary(cacheKey);
+        expiries.remove(cacheKey, expiresAt);
+        return true;
+    }
+    
+    private void purgeExpired(long now) {
+        Iterator<Map.Entry<String, Long>> iterator = expiries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (now >= entry.getValue()) {
+                removeSummary(entry.getKey());
+                iterator.remove();
+            }
+        }
+    }
+    
+    private void removeSummary(String cacheKey) {
+        if (offHeapStore != null) {
+            offHeapStore.remove(cacheKey);
+        } else {
+            cache.remove(cacheKey);
+        }
+    }
     
     public boolean markAsProcessing(String cacheKey, String jobId) {
         String processingKey = PROCESSING_PREFIX + cacheKey;
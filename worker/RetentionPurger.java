@@ -0,0 +1,268 @@
+package worker;
+
+import models.Job;
+import enums.JobStatus;
+import config.DatabaseConfiguration;
+import dao.ContentBlobDao;
+import dao.DaoFactory;
+import dao.JobDao;
+import dao.JobPartitionDao;
+import dao.UserDao;
+import util.JsonUtils;
+import util.TimeUtils;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Background retention (RETENTION_ENABLED=true): deletes jobs older than their status' TTL.
+ * Expired rows are removed in small keyset-ordered chunks with a pause in between, so no statement
+ * holds locks for long and replicas keep up. When jobs is partitioned by month, partitions that are
+ * entirely expired are dropped instead. Jobs can be archived as gzipped JSON lines before deletion.
+ */
+public class RetentionPurger {
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    
+    private final JobDao jobDao;
+    private final UserDao userDao;
+    private final ContentBlobDao contentBlobDao;
+    private final JobPartitionDao partitionDao;
+    // Statuses without an entry are kept forever
+    private final Map<JobStatus, Long> ttlMs = new EnumMap<>(JobStatus.class);
+    private final int chunkSize;
+    private final long chunkPauseMs;
+    private final long intervalMs;
+    private final int partitionMonthsAhead;
+    private final Path archiveDir;
+    private volatile boolean running;
+    private Thread thread;
+    
+    public RetentionPurger() {
+        this.jobDao = DaoFactory.getJobDao();
+        this.userDao = DaoFactory.getUserDao();
+        this.contentBlobDao = new ContentBlobDao();
+        this.partitionDao = JobPartitionDao.isEnabled() ? new JobPartitionDao() : null;
+        
+        for (JobStatus status : JobStatus.values()) {
+            int defaultDays = status == JobStatus.COMPLETED ? 30 : status == JobStatus.FAILED ? 7 : 0;
+            int days = DatabaseConfiguration.getIntEnv("RETENTION_" + status.name() + "_DAYS", defaultDays);
+            if (days > 0) {
+                ttlMs.put(status, days * DAY_MS);
+            }
+        }
+        this.chunkSize = Math.max(1, DatabaseConfiguration.getIntEnv("RETENTION_CHUNK_SIZE", 500));
+        this.chunkPauseMs = Math.max(0, DatabaseConfiguration.getIntEnv("RETENTION_CHUNK_PAUSE_MS", 100));
+        this.intervalMs = Math.max(1, DatabaseConfiguration.getIntEnv("RETENTION_INTERVAL_MINUTES", 60)) * 60_000L;
+        this.partitionMonthsAhead = Math.max(1, DatabaseConfiguration.getIntEnv("JOBS_PARTITION_MONTHS_AHEAD", 3));
+        String dir = DatabaseConfiguration.getEnv("RETENTION_ARCHIVE_DIR", "");
+        this.archiveDir = dir.isEmpty() ? null : Paths.get(dir);
+    }
+    
+    public static boolean isEnabled() {
+        return DatabaseConfiguration.getBooleanEnv("RETENTION_ENABLED", false);
+    }
+    
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "retention-purger");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+    
+    private void run() {
+        while (running) {
+            try {
+                purge();
+                Thread.sleep(intervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                System.err.println("Error purging expired jobs: " + e.getMessage());
+                try {
+                    Thread.sleep(intervalMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Runs one retention pass: partition drops first, then chunked deletes of whatever expired rows remain
+     */
+    public void purge() throws SQLException, IOException, InterruptedException {
+        if (partitionDao != null) {
+            partitionDao.ensurePartitioned(partitionMonthsAhead);
+            dropExpiredPartitions();
+        }
+        
+        long now = System.currentTimeMillis();
+        for (Map.Entry<JobStatus, Long> entry : ttlMs.entrySet()) {
+            purgeStatus(entry.getKey(), new Timestamp(now - entry.getValue()));
+        }
+    }
+    
+    private void purgeStatus(JobStatus status, Timestamp cutoff) throws SQLException, IOException, InterruptedException {
+        Timestamp afterCreatedAt = null;
+        String afterId = null;
+        int purged = 0;
+        while (running) {
+            List<Job> page = jobDao.findExpired(status, cutoff, afterCreatedAt, afterId, chunkSize, archiveDir != null);
+            if (page.isEmpty()) break;
+            
+            purged += removeJobs(page);
+            Job last = page.get(page.size() - 1);
+            afterCreatedAt = last.getCreatedAt();
+            afterId = last.getId();
+            if (page.size() < chunkSize) break;
+            Thread.sleep(chunkPauseMs);
+        }
+        if (purged > 0) {
+            System.out.println("Purged " + purged + " " + status.name().toLowerCase() + " jobs created before " + TimeUtils.formatAsIso8601(cutoff));
+        }
+    }
+    
+    /**
+     * Drops partitions whose every row is past its TTL: the partition ends before the longest TTL's cutoff
+     * and holds no jobs in a status that is kept forever
+     */
+    private void dropExpiredPartitions() throws SQLException, IOException, InterruptedException {
+        if (ttlMs.isEmpty()) return;
+        long longestTtl = 0;
+        for (long ttl : ttlMs.values()) {
+            longestTtl = Math.max(longestTtl, ttl);
+        }
+        long cutoff = System.currentTimeMillis() - longestTtl;
+        Set<JobStatus> keptForever = EnumSet.allOf(JobStatus.class);
+        keptForever.removeAll(ttlMs.keySet());
+        
+        for (JobPartitionDao.JobPartition partition : partitionDao.listPartitions()) {
+            if (!running || partition.upperBound > cutoff) break;
+            if (partitionDao.hasRowsWithStatus(partition.name, keptForever)) continue;
+            
+            // Read-only pass to archive the jobs and unlink them from their users before the drop
+            String afterId = null;
+            while (running) {
+                List<Job> page = partitionDao.findPage(partition.name, afterId, chunkSize, archiveDir != null);
+                if (page.isEmpty()) break;
+                archive(page);
+                userDao.removeJobIds(jobIdsByUser(page));
+                afterId = page.get(page.size() - 1).getId();
+                if (page.size() < chunkSize) break;
+                Thread.sleep(chunkPauseMs);
+            }
+            if (!running) return;
+            
+            // Blobs stored before the watermark were swept with an earlier partition; the ones this partition
+            // still referenced then are checked again by hash, everything else only in the new range
+            Timestamp sweptBefore = contentBlobDao.sweptBefore();
+            Set<String> olderBlobs = sweptBefore != null
+                    ? partitionDao.findBlobHashesCreatedBefore(partition.name, sweptBefore)
+                    : Collections.emptySet();
+            partitionDao.dropPartition(partition.name);
+            System.out.println("Dropped expired jobs partition " + partition.name);
+            sweepBlobs(olderBlobs, sweptBefore, new Timestamp(partition.upperBound));
+        }
+    }
+    
+    /**
+     * Deletes the blobs no job references any more among the given older ones and those first stored in
+     * [sweptBefore, cutoff) - content only the dropped jobs referenced was stored before the partition ended.
+     * The watermark only moves to the cutoff once the whole range is done, so an interrupted sweep is redone.
+     */
+    private void sweepBlobs(Set<String> olderBlobs, Timestamp sweptBefore, Timestamp cutoff) throws SQLException, InterruptedException {
+        List<String> chunk = new ArrayList<>(chunkSize);
+        for (String hash : olderBlobs) {
+            chunk.add(hash);
+            if (chunk.size() == chunkSize) {
+                contentBlobDao.sweepUnreferenced(chunk);
+                chunk.clear();
+                Thread.sleep(chunkPauseMs);
+            }
+        }
+        contentBlobDao.sweepUnreferenced(chunk);
+        
+        ContentBlobDao.SweepPosition position = null;
+        do {
+            position = contentBlobDao.sweepUnreferenced(sweptBefore, cutoff, position, chunkSize);
+            Thread.sleep(chunkPauseMs);
+        } while (position != null && running);
+        if (position == null) {
+            contentBlobDao.setSweptBefore(cutoff);
+        }
+    }
+    
+    /**
+     * Archives a chunk, unlinks it from its users and deletes it; users go first so a crash in between
+     * never leaves a user listing a job that no longer exists
+     */
+    private int removeJobs(List<Job> page) throws SQLException, IOException {
+        archive(page);
+        userDao.removeJobIds(jobIdsByUser(page));
+        List<String> jobIds = new ArrayList<>(page.size());
+        for (Job job : page) {
+            jobIds.add(job.getId());
+        }
+        return jobDao.deleteByIds(jobIds);
+    }
+    
+    private Map<String, Set<String>> jobIdsByUser(List<Job> page) {
+        Map<String, Set<String>> byUser = new HashMap<>();
+        for (Job job : page) {
+            byUser.computeIfAbsent(job.getUserId(), k -> new HashSet<>()).add(job.getId());
+        }
+        return byUser;
+    }
+    
+    /**
+     * Appends the jobs as JSON lines to RETENTION_ARCHIVE_DIR/jobs-YYYY-MM-DD.jsonl.gz; each chunk is its
+     * own gzip member, which gzip tools read back as one stream
+     */
+    private void archive(List<Job> page) throws IOException {
+        if (archiveDir == null) return;
+        Files.createDirectories(archiveDir);
+        Path file = archiveDir.resolve("jobs-" + LocalDate.now(ZoneOffset.UTC) + ".jsonl.gz");
+        try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+             Writer writer = new OutputStreamWriter(new GZIPOutputStream(out), StandardCharsets.UTF_8)) {
+            for (Job job : page) {
+                writer.write("{\"job_id\": \"" + job.getId() + "\"" +
+                        ", \"user_id\": \"" + JsonUtils.escape(job.getUserId()) + "\"" +
+                        ", \"status\": \"" + job.getStatus().name().toLowerCase() + "\"" +
+                        ", \"is_url\": " + job.isUrl() +
+                        ", \"original_input\": \"" + JsonUtils.escape(job.getInputContent()) + "\"" +
+                        ", \"summary\": \"" + JsonUtils.escape(job.getOutputContent()) + "\"" +
+                        ", \"created_at\": \"" + TimeUtils.formatAsIso8601(job.getCreatedAt()) + "\"" +
+                        ", \"updated_at\": \"" + TimeUtils.formatAsIso8601(job.getUpdatedAt()) + "\"}\n");
+            }
+        }
+    }
+}
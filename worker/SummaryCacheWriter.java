@@ -0,0 +1,153 @@
+package worker;
+
+import config.DatabaseConfiguration;
+import dao.SummaryCacheDao;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes summaries to the shared summary_cache table off the job completion path.
+ * Entries are coalesced per key and flushed as one batch when the batch size is reached
+ * or the flush interval elapses; pending entries stay readable until they are written.
+ * While the table is unreachable at most SUMMARY_CACHE_MAX_PENDING entries are held, the oldest
+ * dropped first: the summaries are still in the memory tier, only their shared copy is lost.
+ */
+public class SummaryCacheWriter {
+    private static SummaryCacheWriter instance;
+    
+    private final SummaryCacheDao summaryCacheDao = new SummaryCacheDao();
+    // Oldest first; guarded by itself
+    private final Map<String, String> pending = new LinkedHashMap<>();
+    private final Object signal = new Object();
+    private final int batchSize;
+    private final int maxPending;
+    private int dropped;
+    // Set while the table is unreachable, so a full batch waits for the interval instead of retrying at once
+    private volatile boolean flushFailing;
+    private final long flushIntervalMs;
+    private volatile boolean running = true;
+    private final Thread thread;
+    
+    private SummaryCacheWriter() {
+        batchSize = Math.max(1, DatabaseConfiguration.getIntEnv("SUMMARY_CACHE_BATCH_SIZE", 100));
+        maxPending = Math.max(batchSize, DatabaseConfiguration.getIntEnv("SUMMARY_CACHE_MAX_PENDING", 10000));
+        flushIntervalMs = Math.max(10, DatabaseConfiguration.getIntEnv("SUMMARY_CACHE_FLUSH_MS", 200));
+        thread = new Thread(this::run, "summary-cache-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    public static SummaryCacheWriter getInstance() {
+        if (instance == null) {
+            synchronized (SummaryCacheWriter.class) {
+                if (instance == null) {
+                    instance = new SummaryCacheWriter();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    public void submit(String cacheKey, String summary) {
+        int size;
+        synchronized (pending) {
+            // Re-inserted so a replaced summary counts as the newest
+            pending.remove(cacheKey);
+            pending.put(cacheKey, summary);
+            Iterator<String> oldest = pending.keySet().iterator();
+            while (pending.size() > maxPending) {
+                oldest.next();
+                oldest.remove();
+                dropped++;
+            }
+            size = pending.size();
+        }
+        if (size >= batchSize) {
+            synchronized (signal) {
+                signal.notify();
+            }
+        }
+    }
+    
+    /**
+     * Returns a summary that has been submitted but not yet written, or null
+     */
+    public String getPending(String cacheKey) {
+        synchronized (pending) {
+            return pending.get(cacheKey);
+        }
+    }
+    
+    private int pendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+    
+    /**
+     * Stops the writer thread and writes out everything still pending
+     */
+    public void stop() {
+        running = false;
+        synchronized (signal) {
+            signal.notify();
+        }
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+    
+    private void run() {
+        while (running) {
+            try {
+                synchronized (signal) {
+                    if (pendingCount() < batchSize || flushFailing) {
+                        signal.wait(flushIntervalMs);
+                    }
+                }
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+    
+    private synchronized void flush() {
+        while (true) {
+            Map<String, String> batch = new LinkedHashMap<>();
+            synchronized (pending) {
+                if (dropped > 0) {
+                    System.err.println("Dropped " + dropped + " summary cache entries over SUMMARY_CACHE_MAX_PENDING=" + maxPending);
+                    dropped = 0;
+                }
+                for (Map.Entry<String, String> entry : pending.entrySet()) {
+                    batch.put(entry.getKey(), entry.getValue());
+                    if (batch.size() >= batchSize) break;
+                }
+            }
+            if (batch.isEmpty()) {
+                flushFailing = false;
+                return;
+            }
+            try {
+                summaryCacheDao.saveAll(batch);
+            } catch (Exception e) {
+                // Keep the entries pending and retry on the next flush
+                System.err.println("Error writing summary cache batch: " + e.getMessage());
+                flushFailing = true;
+                return;
+            }
+            // Only drop entries that were not replaced by a newer summary in the meantime
+            synchronized (pending) {
+                for (Map.Entry<String, String> entry : batch.entrySet()) {
+                    pending.remove(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+}